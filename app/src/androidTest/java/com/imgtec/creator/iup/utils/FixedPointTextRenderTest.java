@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.widget.TextView;
+
+import com.imgtec.creator.iup.R;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks on device that values of interactive screen are rendered without allocating and well within
+ * frame time.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FixedPointTextRenderTest {
+
+  private static final int UPDATES = 1000;
+  private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+  @Rule
+  public final UiThreadTestRule uiThread = new UiThreadTestRule();
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void updateDoesNotAllocate() {
+    FixedPointText text = new FixedPointText(
+        InstrumentationRegistry.getTargetContext().getString(R.string.celsius_value), 2);
+    for (int i = 0; i < UPDATES; i++) {
+      text.update(value(i));
+    }
+
+    Debug.resetThreadAllocCount();
+    Debug.startAllocCounting();
+    try {
+      for (int i = 0; i < UPDATES; i++) {
+        text.update(-value(i));
+      }
+    } finally {
+      Debug.stopAllocCounting();
+    }
+
+    assertEquals(0, Debug.getThreadAllocCount());
+  }
+
+  @Test
+  @UiThreadTest
+  public void renderFitsInFrame() {
+    TextView view = new TextView(InstrumentationRegistry.getTargetContext());
+    FixedPointText text = new FixedPointText(
+        InstrumentationRegistry.getTargetContext().getString(R.string.volt_value), 2);
+    Bitmap bitmap = Bitmap.createBitmap(480, 100, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(bitmap);
+    int widthSpec = View.MeasureSpec.makeMeasureSpec(bitmap.getWidth(), View.MeasureSpec.EXACTLY);
+    int heightSpec = View.MeasureSpec.makeMeasureSpec(bitmap.getHeight(), View.MeasureSpec.AT_MOST);
+
+    long total = 0;
+    for (int i = 0; i < UPDATES; i++) {
+      long start = System.nanoTime();
+      if (text.update(value(i))) {
+        view.setText(text.getBuffer(), 0, text.length());
+      }
+      view.measure(widthSpec, heightSpec);
+      view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+      view.draw(canvas);
+      total += System.nanoTime() - start;
+    }
+    bitmap.recycle();
+
+    long average = total / UPDATES;
+    assertTrue("Average render took " + average + " ns", average < FRAME_NANOS / 4);
+  }
+
+  /**
+   * Value changing in hundredths, like readings of the board sensors.
+   */
+  private static float value(int i) {
+    return 20 + (i % 500) / 100f;
+  }
+}
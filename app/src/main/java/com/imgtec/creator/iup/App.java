@@ -45,6 +45,7 @@ import com.imgtec.creator.iup.di.component.DaggerAppComponent;
 import com.imgtec.creator.iup.di.module.AppModule;
 import com.imgtec.creator.iup.retrofit.OkHttpsClient;
 import com.imgtec.creator.iup.retrofit.SoftAPRetrofitService;
+import com.imgtec.creator.iup.utils.NetworkMetrics;
 import com.imgtec.creator.iup.utils.Preferences;
 import com.imgtec.creator.iup.utils.SetupGuideInfoSingleton;
 import com.imgtec.creator.iup.utils.WifiObserver;
@@ -68,6 +69,7 @@ public class App extends Application implements WifiObserver.WiFiConnectionListe
   private SharedPreferences settingsPreferences;
 
   private SoftAPRetrofitService softAPRetrofitService;
+  private final NetworkMetrics softAPMetrics = new NetworkMetrics("softap");
   private WifiUtil wifiUtil;
   private final ConnectionBroadcastReceiver connectionBroadcastReceiver =
       new ConnectionBroadcastReceiver();
@@ -118,6 +120,13 @@ public class App extends Application implements WifiObserver.WiFiConnectionListe
     return softAPRetrofitService;
   }
 
+  /**
+   * @return metrics of requests made to the board in SoftAP mode, kept across network changes
+   */
+  public NetworkMetrics getSoftAPMetrics() {
+    return softAPMetrics;
+  }
+
   public WifiUtil getWifiUtil() {
     return wifiUtil;
   }
@@ -128,7 +137,7 @@ public class App extends Application implements WifiObserver.WiFiConnectionListe
     Retrofit retrofit = new Retrofit.Builder()
         .baseUrl(sharedPreferences.getString(Preferences.WIFIRE_URL, Preferences.WIFIRE_URL_BOARD_WEBSERVICE_URL))
         .addConverterFactory(SimpleXmlConverterFactory.create())
-        .client(OkHttpsClient.newOkHttpsClient(socketFactory))
+        .client(OkHttpsClient.newOkHttpsClient(socketFactory, softAPMetrics))
         .build();
 
     softAPRetrofitService = retrofit.create(SoftAPRetrofitService.class);
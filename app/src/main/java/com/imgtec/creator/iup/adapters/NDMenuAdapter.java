@@ -47,7 +47,7 @@ import com.imgtec.creator.iup.wifire.DeviceHelper;
 import com.imgtec.creator.iup.wifire.WifireDevice;
 import com.imgtec.creator.iup.fragments.navigationdrawer.NDMenuItem;
 import com.imgtec.creator.iup.utils.NDMenuMode;
-import com.imgtec.creator.iup.utils.Preferences;
+import com.imgtec.creator.iup.utils.SessionStore;
 import com.imgtec.creator.iup.utils.SetupGuideInfoSingleton;
 
 /**
@@ -62,15 +62,15 @@ public class NDMenuAdapter extends ArrayAdapter {
   private final Context context;
   private final LayoutInflater inflater;
   private final NDMenuItem[] ndMenuItems;
-  private final Preferences preferences;
+  private final SessionStore sessionStore;
   private DeviceHelper deviceHelper;
 
-  public NDMenuAdapter(Context context, NDMenuItem[] ndMenuItems, Preferences preferences, DeviceHelper deviceHelper) {
+  public NDMenuAdapter(Context context, NDMenuItem[] ndMenuItems, SessionStore sessionStore, DeviceHelper deviceHelper) {
     super(context, 0);
     this.context = context;
     this.inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
     this.ndMenuItems = ndMenuItems;
-    this.preferences = preferences;
+    this.sessionStore = sessionStore;
     this.deviceHelper = deviceHelper;
   }
 
@@ -126,7 +126,7 @@ public class NDMenuAdapter extends ArrayAdapter {
     if (menuItem.isMyDevice()) {
       fillDeviceInfo(viewHolder);
     } else if (menuItem.isUserName()) {
-      String userName = preferences.getUserName();
+      String userName = sessionStore.getSession().getUserName();
       viewHolder.title.setSingleLine();
       viewHolder.title.setEllipsize(TextUtils.TruncateAt.END);
       viewHolder.title.setText(userName);
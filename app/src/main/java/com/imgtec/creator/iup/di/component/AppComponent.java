@@ -40,6 +40,7 @@ import com.imgtec.creator.iup.fragments.loginsignup.LogInOrSignUpFragment;
 import com.imgtec.creator.iup.fragments.menu.AboutFragment;
 import com.imgtec.creator.iup.fragments.menu.ConnectedDevicesFragment;
 import com.imgtec.creator.iup.fragments.menu.DeviceInfoFragment;
+import com.imgtec.creator.iup.fragments.menu.DiagnosticsFragment;
 import com.imgtec.creator.iup.fragments.menu.CreatorDeviceInfoFragment;
 import com.imgtec.creator.iup.fragments.menu.InteractiveFragment;
 import com.imgtec.creator.iup.fragments.menu.setupguide.ConnectingFragment;
@@ -94,4 +95,6 @@ public interface AppComponent {
   void inject(InteractiveFragment interactiveFragment);
 
   void inject(FetchCertificateFragment fetchCertificateFragment);
+
+  void inject(DiagnosticsFragment diagnosticsFragment);
 }
@@ -35,14 +35,25 @@ import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
 
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.imgtec.creator.iup.App;
+import com.imgtec.creator.iup.BuildConfig;
 import com.imgtec.creator.iup.di.scope.ForApplication;
 import com.imgtec.creator.iup.ds.DSService;
 import com.imgtec.creator.iup.wifire.DeviceHelper;
+import com.imgtec.creator.iup.wifire.DeviceSnapshots;
+import com.imgtec.creator.iup.utils.LoadMetrics;
+import com.imgtec.creator.iup.utils.PollingScheduler;
 import com.imgtec.creator.iup.utils.Preferences;
+import com.imgtec.creator.iup.utils.SessionStore;
+import com.imgtec.creator.iup.utils.SnapshotStore;
 
+import java.io.File;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -53,6 +64,8 @@ import dagger.Provides;
 @Module
 public class AppModule {
 
+  private static final int BACKGROUND_THREADS = 2;
+
   private App app;
 
   public AppModule(App app) {
@@ -87,8 +100,18 @@ public class AppModule {
 
   @Provides
   @Singleton
-  DSService provideDeviceServerCaller(Preferences preferences) {
-    return new DSService("https://deviceserver.creatordev.io", preferences);
+  SessionStore provideSessionStore(Preferences preferences, @Named("IO") ExecutorService ioExecutor) {
+    return new SessionStore(preferences, ioExecutor);
+  }
+
+  @Provides
+  @Singleton
+  DSService provideDeviceServerCaller(Preferences preferences, SessionStore sessionStore,
+                                      PollingScheduler pollingScheduler,
+                                      @Named("Background") ListeningExecutorService backgroundExecutor,
+                                      @Named("Scheduler") ScheduledExecutorService scheduler) {
+    return new DSService(BuildConfig.DEVICE_SERVER_URL, preferences, sessionStore, pollingScheduler,
+        new File(app.getCacheDir(), "ds-http"), backgroundExecutor, scheduler);
   }
 
   @Provides
@@ -99,8 +122,63 @@ public class AppModule {
 
   @Provides
   @Singleton
-  ExecutorService provideExecutor() {
-    return Executors.newFixedThreadPool(4);
+  DeviceSnapshots provideDeviceSnapshots(@Named("IO") ExecutorService ioExecutor,
+                                         @Named("Background") ListeningExecutorService backgroundExecutor) {
+    SnapshotStore store = new SnapshotStore(new File(app.getFilesDir(), "snapshots.bin"), ioExecutor);
+    store.preload();
+    return new DeviceSnapshots(store, backgroundExecutor);
+  }
+
+  /**
+   * App-wide pool for blocking Device Server work (login, logout, cache maintenance).
+   * Screens must not create their own executors; thread count stays bounded regardless
+   * of navigation.
+   */
+  @Provides
+  @Singleton
+  @Named("Background")
+  ListeningExecutorService provideBackgroundExecutor() {
+    return MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(BACKGROUND_THREADS,
+        new ThreadFactoryBuilder().setNameFormat("background-%d").setDaemon(true).build()));
+  }
+
+  /**
+   * Single sequential thread shared by local persistence writers.
+   */
+  @Provides
+  @Singleton
+  @Named("IO")
+  ExecutorService provideIoExecutor() {
+    return Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("io").setDaemon(true).build());
+  }
+
+  /**
+   * Single thread firing app-wide timers (polling, token refresh). Tasks run on it must not block,
+   * blocking work is handed over to background pool.
+   */
+  @Provides
+  @Singleton
+  @Named("Scheduler")
+  ScheduledExecutorService provideScheduler() {
+    return Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("scheduler").setDaemon(true).build());
+  }
+
+  @Provides
+  @Singleton
+  PollingScheduler providePollingScheduler(@Named("Scheduler") ScheduledExecutorService scheduler) {
+    return new PollingScheduler(scheduler);
+  }
+
+  /**
+   * Loading times of interactive screen, shown by diagnostics.
+   */
+  @Provides
+  @Singleton
+  @Named("Interactive")
+  LoadMetrics provideInteractiveLoadMetrics() {
+    return new LoadMetrics("interactive");
   }
 
 
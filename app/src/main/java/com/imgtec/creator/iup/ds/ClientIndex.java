@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.imgtec.creator.iup.ds.pojo.Client;
+import com.imgtec.creator.iup.ds.pojo.Clients;
+import com.imgtec.creator.iup.ds.pojo.PageInfo;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Name keyed index of clients seen on Device Server. It is populated from every page of
+ * {@link Clients} downloaded by {@link DSService}, so resolving client by name does not require
+ * to download and scan whole list of clients. Entries are dropped when they expire or when links
+ * of a client turn out to be stale.
+ *
+ * This class is thread safe.
+ */
+public class ClientIndex {
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final long ttl;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  ClientIndex(long ttlMillis) {
+    this.ttl = ttlMillis;
+  }
+
+  /**
+   * Returns client with specified name or null if it is not indexed or entry has already expired.
+   */
+  Client get(String name) {
+    Entry entry = entries.get(name);
+    if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+      if (entry != null) {
+        entries.remove(name, entry);
+      }
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.client;
+  }
+
+  /**
+   * Indexes all clients from page. When page contains complete list of clients, clients that
+   * are not on it are removed from index.
+   * @param filtered true when page was filtered while decoded, it never counts as complete list
+   */
+  void update(Clients clients, boolean filtered) {
+    if (clients == null || clients.getItems() == null) {
+      return;
+    }
+    long expiryTime = System.currentTimeMillis() + ttl;
+    Set<String> names = new HashSet<>();
+    for (Client client : clients.getItems()) {
+      if (client.getName() != null) {
+        names.add(client.getName());
+        entries.put(client.getName(), new Entry(client, expiryTime));
+      }
+    }
+    if (!filtered && isComplete(clients.getPageInfo())) {
+      entries.keySet().retainAll(names);
+    }
+  }
+
+  void invalidate(String name) {
+    entries.remove(name);
+  }
+
+  void invalidateAll() {
+    entries.clear();
+  }
+
+  /**
+   * @return number of lookups served from memory since this index was created
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * @return number of lookups that had to go to Device Server since this index was created
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  private static boolean isComplete(PageInfo pageInfo) {
+    if (pageInfo == null || pageInfo.getStartIndex() == null || pageInfo.getItemsCount() == null
+        || pageInfo.getTotalCount() == null) {
+      return false;
+    }
+    return pageInfo.getStartIndex() == 0 && pageInfo.getItemsCount() >= pageInfo.getTotalCount();
+  }
+
+  private static class Entry {
+    final Client client;
+    final long expiryTime;
+
+    Entry(Client client, long expiryTime) {
+      this.client = client;
+      this.expiryTime = expiryTime;
+    }
+
+    boolean isExpired(long now) {
+      return now >= expiryTime;
+    }
+  }
+}
@@ -31,17 +31,29 @@
 package com.imgtec.creator.iup.ds;
 
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
+import com.imgtec.creator.iup.ds.PriorityDispatcher.RequestClass;
 import com.imgtec.creator.iup.ds.exceptions.ConflictException;
 import com.imgtec.creator.iup.ds.exceptions.DeviceServerException;
 import com.imgtec.creator.iup.ds.exceptions.NetworkException;
 import com.imgtec.creator.iup.ds.exceptions.NotFoundException;
-import com.imgtec.creator.iup.ds.exceptions.ParseException;
 import com.imgtec.creator.iup.ds.exceptions.UnauthorizedException;
 import com.imgtec.creator.iup.ds.exceptions.UnknownException;
 import com.imgtec.creator.iup.ds.pojo.Api;
@@ -60,23 +72,45 @@ import com.imgtec.creator.iup.ds.pojo.ObjectTypes;
 import com.imgtec.creator.iup.ds.pojo.PSK;
 import com.imgtec.creator.iup.ds.pojo.PSKs;
 import com.imgtec.creator.iup.ds.pojo.Pojo;
+import com.imgtec.creator.iup.utils.NetworkMetrics;
+import com.imgtec.creator.iup.utils.PollingScheduler;
 import com.imgtec.creator.iup.utils.Preferences;
+import com.imgtec.creator.iup.utils.SessionStore;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
 
 import okhttp3.Authenticator;
-import okhttp3.FormBody;
-import okhttp3.Headers;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
 import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import okhttp3.Route;
 
 /**
@@ -84,28 +118,153 @@ import okhttp3.Route;
  * that can by used by developer in either synchronous or asynchronous way.
  *
  * This class uses {@link OkHttpClient} to make http requests and {@link Gson} to serialize/deserialize payload.
+ * Requests are enqueued in OkHttp dispatcher and multi-step flows are composed from their futures, so no
+ * thread is blocked waiting for a response. Only login runs as a blocking task on a single background thread.
  */
 public class DSService {
 
+  private static final long API_TTL = 10 * 60 * 1000;
+  private static final long CONFIGURATION_TTL = 10 * 60 * 1000;
+  private static final long IDENTITIES_TTL = 10 * 60 * 1000;
+  private static final long OBJECT_TYPES_TTL = 5 * 60 * 1000;
+  private static final long CLIENTS_TTL = 5 * 60 * 1000;
+  private static final int CLIENTS_PAGE_SIZE = 100;
+
+  private static final String API_KEY = "api";
+  private static final String AUTHORIZED_API_KEY = "api:authorized";
+  private static final String CONFIGURATION_KEY = "configuration";
+  private static final String IDENTITIES_KEY = "identities";
+  private static final String OBJECT_TYPES_KEY_PREFIX = "objecttypes:";
+
+  /**
+   * Maximum number of concurrent requests to Device Server.
+   */
+  private static final int MAX_REQUESTS_PER_HOST = 4;
+  /**
+   * Time after which queued request is promoted by one {@link RequestClass}.
+   */
+  private static final long PRIORITY_AGING_STEP = 2000;
+  /**
+   * Number of finished spans kept by {@link #tracer}.
+   */
+  private static final int TRACE_CAPACITY = 2048;
+
+  /**
+   * Maximum number of response body bytes printed when body logging is enabled.
+   */
+  private static final long MAX_LOGGED_BODY_BYTES = 4 * 1024;
+
+  /**
+   * Polling policy of {@link #observe(Client, int, TypeToken)}. Device values change mostly on user interaction,
+   * so polling slows down to 10s when nothing changes.
+   */
+  private static final PollingScheduler.Policy OBSERVE_POLICY = new PollingScheduler.Policy(2000, 10000, 30000);
+
+  /**
+   * Size of HTTP disk cache.
+   */
+  private static final long HTTP_CACHE_SIZE = 5 * 1024 * 1024;
+
+  /**
+   * Freshness, in seconds, given to responses that come without validators and caching headers.
+   * Responses that do not match any rule are always downloaded again.
+   */
+  private static final Map<Pattern, Integer> FRESHNESS_RULES = new LinkedHashMap<>();
+
+  static {
+    FRESHNESS_RULES.put(Pattern.compile("/?"), 10 * 60);
+    FRESHNESS_RULES.put(Pattern.compile(".*/(configuration|identities)(/.*)?"), 10 * 60);
+    FRESHNESS_RULES.put(Pattern.compile(".*/objecttypes/3/instances"), 60 * 60);
+    FRESHNESS_RULES.put(Pattern.compile(".*/objecttypes"), 5 * 60);
+  }
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DSService.class);
+
   private OkHttpClient client;
   private Gson gson;
 
   private String deviceServerURL;
 
   private Preferences preferences;
-
-  private ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+  private SessionStore sessionStore;
+  private PollingScheduler pollingScheduler;
+
+  private final LinkCache linkCache = new LinkCache();
+  private final HttpCacheStats httpCacheStats = new HttpCacheStats();
+  private final PollStats pollStats = new PollStats();
+  private final NetworkMetrics networkMetrics = new NetworkMetrics("deviceserver");
+  private final Tracer tracer = new Tracer(TRACE_CAPACITY);
+  /**
+   * Spans of enqueued calls, see {@link TraceInterceptor}.
+   */
+  private final Map<Request, Tracer.Span> callSpans = new ConcurrentHashMap<>();
+  private final RequestCoalescer coalescer = new RequestCoalescer();
+  private final PriorityDispatcher priorityDispatcher = new PriorityDispatcher(MAX_REQUESTS_PER_HOST, PRIORITY_AGING_STEP);
+  private final Cache httpCache;
+  private final ClientIndex clientIndex = new ClientIndex(CLIENTS_TTL);
+  private final TokenManager tokenManager;
+  private final JsonDecoder decoder;
+  private volatile boolean bodyLoggingEnabled;
+  private final Map<String, SharedPoller<?>> pollers = new HashMap<>();
+
+  private final ListeningExecutorService executor;
+  /**
+   * Eviction of HTTP cache started by the last {@link #logout()}, awaited by the next login.
+   */
+  private volatile Future<?> cacheEviction;
 
 
-  public DSService(String deviceServerUrl, Preferences preferences) {
+  /**
+   * @param cacheDir directory of HTTP disk cache, when null responses are not cached
+   * @param scheduler fires timers only, work they start runs on executor
+   */
+  public DSService(String deviceServerUrl, Preferences preferences, SessionStore sessionStore,
+                   PollingScheduler pollingScheduler, File cacheDir, ListeningExecutorService executor,
+                   ScheduledExecutorService scheduler) {
     this.deviceServerURL = deviceServerUrl;
+    this.executor = executor;
     this.preferences = preferences;
+    this.sessionStore = sessionStore;
+    this.pollingScheduler = pollingScheduler;
+    tokenManager = new TokenManager(sessionStore, new TokenManager.Refresher() {
+      @Override
+      public OauthToken refresh(String refreshToken) {
+        return refreshToken(refreshToken);
+      }
+    }, scheduler, executor);
+    httpCache = cacheDir != null ? new Cache(cacheDir, HTTP_CACHE_SIZE) : null;
+    priorityDispatcher.setBudget(RequestClass.FOREGROUND, 3);
+    priorityDispatcher.setBudget(RequestClass.BACKGROUND, 2);
+    priorityDispatcher.setBudget(RequestClass.PREFETCH, 1);
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+    networkMetrics.setDispatcher(dispatcher);
     client = new OkHttpClient.Builder()
-        .authenticator(new Authenticator1(this, preferences))
-        .addNetworkInterceptor(new OAuthInterceptor(this, preferences))
+        .dispatcher(dispatcher)
+        .cache(httpCache)
+        .dns(networkMetrics.wrap(Dns.SYSTEM))
+        .socketFactory(networkMetrics.getSocketFactory())
+        .authenticator(new Authenticator1(tokenManager))
+        .addInterceptor(new UncheckedExceptionInterceptor())
+        .addInterceptor(new TraceInterceptor(tracer, callSpans))
+        // application interceptor, so failed token refresh is not retried on other routes
+        .addInterceptor(new OAuthInterceptor(tokenManager))
+        .addInterceptor(networkMetrics.getInterceptor())
+        .addInterceptor(new CacheStatsInterceptor(httpCacheStats))
+        .addNetworkInterceptor(new FreshnessInterceptor(FRESHNESS_RULES))
+        .addNetworkInterceptor(networkMetrics.getNetworkInterceptor())
         .build();
 
-    gson = new Gson();
+    gson = JsonDecoder.createGson();
+    decoder = new JsonDecoder(gson);
+  }
+
+  /**
+   * Enables logging of response bodies. Disabled by default, when enabled only first
+   * {@link #MAX_LOGGED_BODY_BYTES} bytes of every body are logged.
+   */
+  public void setBodyLoggingEnabled(boolean enabled) {
+    bodyLoggingEnabled = enabled;
   }
 
   /**
@@ -117,6 +276,84 @@ public class DSService {
   }
 
 
+  /**
+   * Returns cache used to resolve links of rarely changing Device Server documents. Exposed mainly
+   * to read hit/miss statistics.
+   */
+  public LinkCache getLinkCache() {
+    return linkCache;
+  }
+
+  /**
+   * Returns index used to resolve clients by name. Exposed mainly to read hit/miss statistics.
+   */
+  public ClientIndex getClientIndex() {
+    return clientIndex;
+  }
+
+  /**
+   * Returns counters of HTTP disk cache usage.
+   */
+  public HttpCacheStats getHttpCacheStats() {
+    return httpCacheStats;
+  }
+
+  /**
+   * Returns counters of polls made by {@link #observe(Client, int, TypeToken)}.
+   */
+  public PollStats getPollStats() {
+    return pollStats;
+  }
+
+  /**
+   * Returns latency and traffic metrics of requests made to Device Server.
+   */
+  public NetworkMetrics getNetworkMetrics() {
+    return networkMetrics;
+  }
+
+  /**
+   * Returns tracer recording spans of operations and their requests.
+   */
+  public Tracer getTracer() {
+    return tracer;
+  }
+
+  /**
+   * Returns coalescer shared by concurrent identical GETs. Exposed mainly to read its counters.
+   */
+  public RequestCoalescer getRequestCoalescer() {
+    return coalescer;
+  }
+
+  /**
+   * Returns dispatcher deciding order of asynchronous requests. Exposed mainly to read queue-wait times.
+   */
+  public PriorityDispatcher getPriorityDispatcher() {
+    return priorityDispatcher;
+  }
+
+  /**
+   * Logs user out: forgets OAuth tokens and every cached document of current session. HTTP cache is
+   * cleared in background, next login waits until it is done.
+   */
+  public void logout() {
+    preferences.setAutologin(false);
+    clearAccessToken();
+    if (httpCache != null) {
+      cacheEviction = executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            httpCache.evictAll();
+          } catch (IOException e) {
+            LOGGER.warn("Could not clear HTTP cache", e);
+          }
+        }
+      });
+    }
+  }
+
   /**
    * Tries to login use using previously saved refresh token. Should be used when
    * {@link #isAutoLoginEnabled()} returns true.
@@ -125,16 +362,16 @@ public class DSService {
     final Runner<CreatorVoid> runner = new Runner<CreatorVoid>() {
       @Override
       public CreatorVoid action() {
-        return loginInternal(preferences.getRefreshToken());
+        return loginInternal(tokenManager.getRefreshToken());
       }
 
     };
-    return executor.submit(new Callable<CreatorVoid>() {
+    return executor.submit(traced("login", new Callable<CreatorVoid>() {
       @Override
       public CreatorVoid call() throws Exception {
         return runner.call();
       }
-    });
+    }));
   }
 
   /**
@@ -154,33 +391,35 @@ public class DSService {
       }
 
     };
-    return executor.submit(new Callable<CreatorVoid>() {
+    return executor.submit(traced("login", new Callable<CreatorVoid>() {
       @Override
       public CreatorVoid call() throws Exception {
         return runner.call();
       }
-    });
+    }));
   }
 
   /**
    * Looks if client with specified is connected to Device Server and returns it.
+   * Client is taken from {@link #clientIndex} when possible, otherwise clients are downloaded page by page
+   * until requested client is found.
    * @param clientName name of client to get
    * @return client object
    * @throws NotFoundException when there is no client with specified name connected to server
    * @throws NetworkException in case of communication error.
    */
   public ListenableFuture<Client> getClient(final String clientName) {
-    final Runner<Client> runner = new Runner<Client>() {
-      @Override
-      public Client action() {
-        return getClientInternal(clientName);
-      }
-    };
-
-    return executor.submit(new Callable<Client>() {
+    return async("getClient", new Flow<Client>() {
       @Override
-      public Client call() throws Exception {
-        return runner.call();
+      public ListenableFuture<Client> start() {
+        Client indexed = clientIndex.get(clientName);
+        if (indexed != null) {
+          return Futures.immediateFuture(indexed);
+        }
+        Pager<Client> pager = getClientsPager(Predicates.equalTo(clientName));
+        ListenableFuture<Client> client = findClient(pager, clientName);
+        pager.closeWhenDone(client);
+        return client;
       }
     });
   }
@@ -195,19 +434,77 @@ public class DSService {
    * @return {@link Clients} object that contains list of connected clients as well as {@link com.imgtec.creator.iup.ds.pojo.PageInfo} object
    */
   public ListenableFuture<Clients> getClients(final int startIndex, final int pageSize) {
+    return async("getClients", new Flow<Clients>() {
+      @Override
+      public ListenableFuture<Clients> start() {
+        return requestClients(startIndex, pageSize, null, RequestClass.FOREGROUND);
+      }
+    });
+  }
 
-    final Runner<Clients> runner = new Runner<Clients>() {
+  /**
+   * Returns lazy iterator over all clients connected to Device Server. Clients are downloaded page by
+   * page as the iterator advances, see {@link Pager}.
+   */
+  public Pager<Client> getClientsPager() {
+    return getClientsPager(null);
+  }
+
+  /**
+   * Returns lazy iterator over clients whose names are accepted by filter. Filter runs while pages are
+   * decoded, see {@link FilteringClientsAdapter}.
+   * @param nameFilter decides which clients are decoded, null accepts all
+   */
+  public Pager<Client> getClientsPager(final Predicate<String> nameFilter) {
+    final TypeAdapter<Clients> adapter = nameFilter != null ? new FilteringClientsAdapter(gson, nameFilter) : null;
+    return new Pager<>(new Pager.Source<Client>() {
       @Override
-      public Clients action() {
-        return clientsInternal(startIndex, pageSize);
+      public ListenableFuture<Clients> load(String href, int startIndex, int pageSize) {
+        RequestClass requestClass = pageClass(href, startIndex);
+        if (href == null) {
+          return requestClients(startIndex, pageSize, adapter, requestClass);
+        }
+        Request request = RequestFactory.buildRequest(href, null, "GET", null, null, null, true);
+        return indexClients(DSService.this.<Clients>executeAsync(request, Clients.class, null, adapter, requestClass),
+            adapter != null);
       }
+    }, CLIENTS_PAGE_SIZE);
+  }
 
-    };
+  /**
+   * Returns clients accepted by filter, no more than limit of them. Pages are downloaded only until
+   * limit is reached.
+   * @param filter decides which clients should be returned
+   * @param limit maximum number of returned clients
+   */
+  public ListenableFuture<List<Client>> findClients(final Predicate<? super Client> filter, final int limit) {
+    return async("findClients", new Flow<List<Client>>() {
+      @Override
+      public ListenableFuture<List<Client>> start() {
+        Pager<Client> pager = getClientsPager();
+        ListenableFuture<List<Client>> clients = findClients(pager, filter, limit, new ArrayList<Client>());
+        pager.closeWhenDone(clients);
+        return clients;
+      }
+    });
+  }
 
-    return executor.submit(new Callable<Clients>() {
+  /**
+   * Returns clients whose names are accepted by filter, no more than limit of them. Unlike
+   * {@link #findClients(Predicate, int)} filter runs while pages are decoded, so rejected clients cost
+   * neither objects nor strings.
+   * @param nameFilter decides which clients should be returned, called with null for clients without name
+   * @param limit maximum number of returned clients
+   */
+  public ListenableFuture<List<Client>> findClientsByName(final Predicate<String> nameFilter, final int limit) {
+    return async("findClientsByName", new Flow<List<Client>>() {
       @Override
-      public Clients call() throws Exception {
-        return runner.call();
+      public ListenableFuture<List<Client>> start() {
+        Pager<Client> pager = getClientsPager(nameFilter);
+        ListenableFuture<List<Client>> clients = findClients(pager, Predicates.<Client>alwaysTrue(), limit,
+            new ArrayList<Client>());
+        pager.closeWhenDone(clients);
+        return clients;
       }
     });
   }
@@ -218,17 +515,20 @@ public class DSService {
    * @throws NetworkException in case of communication error.
    */
   public ListenableFuture<PSK> generatePSK() {
-    final Runner<PSK> runner = new Runner<PSK>() {
+    return async("generatePSK", new Flow<PSK>() {
       @Override
-      public PSK action() {
-        return generatePSKInternal();
-      }
-    };
-
-    return executor.submit(new Callable<PSK>() {
-      @Override
-      public PSK call() throws Exception {
-        return runner.call();
+      public ListenableFuture<PSK> start() {
+        return withStaleLinkRetry(new Flow<PSK>() {
+          @Override
+          public ListenableFuture<PSK> start() {
+            return Futures.transformAsync(requestIdentities(), new AsyncFunction<Identities, PSK>() {
+              @Override
+              public ListenableFuture<PSK> apply(Identities identities) {
+                return generatePSK(identities);
+              }
+            });
+          }
+        }, IDENTITIES_KEY, AUTHORIZED_API_KEY);
       }
     });
   }
@@ -238,17 +538,21 @@ public class DSService {
    * @return {@link Bootstrap} pojo containing information about Bootstrap Server.
    */
   public ListenableFuture<Bootstrap> getBootstrap() {
-    final Runner<Bootstrap> runner = new Runner<Bootstrap>() {
-      @Override
-      public Bootstrap action() {
-        return getBootstrapInternal();
-      }
-    };
-
-    return executor.submit(new Callable<Bootstrap>() {
+    return async("getBootstrap", new Flow<Bootstrap>() {
       @Override
-      public Bootstrap call() throws Exception {
-        return runner.call();
+      public ListenableFuture<Bootstrap> start() {
+        return withStaleLinkRetry(new Flow<Bootstrap>() {
+          @Override
+          public ListenableFuture<Bootstrap> start() {
+            return Futures.transformAsync(requestConfiguration(), new AsyncFunction<Configuration, Bootstrap>() {
+              @Override
+              public ListenableFuture<Bootstrap> apply(Configuration configuration) {
+                Request request = RequestFactory.buildRequest(configuration.getLinkByRel("bootstrap").getHref(), null, "GET", null, null, null, true);
+                return executeAsync(request, Bootstrap.class, RequestClass.FOREGROUND);
+              }
+            });
+          }
+        }, CONFIGURATION_KEY, AUTHORIZED_API_KEY);
       }
     });
   }
@@ -263,25 +567,162 @@ public class DSService {
    * @param <T> type of item
    * @return
    */
-  public <T extends Pojo> ListenableFuture<Instances<T>> getInstances(final Client client, final int objectID, final TypeToken<Instances<T>> typeToken) {
+  public <T extends Pojo> ListenableFuture<Instances<T>> getInstances(Client client, int objectID, TypeToken<Instances<T>> typeToken) {
+    return getInstances(client, objectID, typeToken, RequestClass.FOREGROUND);
+  }
 
-    final Runner<Instances<T>> runner = new Runner<Instances<T>>() {
+  private <T extends Pojo> ListenableFuture<Instances<T>> getInstances(final Client client, final int objectID,
+                                                                       final TypeToken<Instances<T>> typeToken,
+                                                                       final RequestClass requestClass) {
+    return async("getInstances", new Flow<Instances<T>>() {
       @Override
-      public Instances<T> action() {
-        return getInstancesInternal(client, objectID, typeToken);
+      public ListenableFuture<Instances<T>> start() {
+        return withStaleLinkRetry(new Flow<Instances<T>>() {
+          @Override
+          public ListenableFuture<Instances<T>> start() {
+            return Futures.transformAsync(findObjectType(client, objectID, requestClass), new AsyncFunction<ObjectType, Instances<T>>() {
+              @Override
+              public ListenableFuture<Instances<T>> apply(ObjectType objectType) {
+                return requestInstances(objectType, typeToken, requestClass);
+              }
+            });
+          }
+        }, objectTypesKey(client));
       }
-    };
+    });
+  }
 
-    return executor.submit(new Callable<Instances<T>>() {
+  private <T extends Pojo> ListenableFuture<Fingerprinted<Instances<T>>> pollInstances(
+      final Client client, final int objectID, final TypeToken<Instances<T>> typeToken,
+      final Fingerprinted<Instances<T>> previous) {
+    return async("pollInstances", new Flow<Fingerprinted<Instances<T>>>() {
       @Override
-      public Instances<T> call() throws Exception {
-        return runner.call();
+      public ListenableFuture<Fingerprinted<Instances<T>>> start() {
+        return withStaleLinkRetry(new Flow<Fingerprinted<Instances<T>>>() {
+          @Override
+          public ListenableFuture<Fingerprinted<Instances<T>>> start() {
+            return Futures.transformAsync(findObjectType(client, objectID, RequestClass.BACKGROUND),
+                new AsyncFunction<ObjectType, Fingerprinted<Instances<T>>>() {
+                  @Override
+                  public ListenableFuture<Fingerprinted<Instances<T>>> apply(ObjectType objectType) {
+                    Request request = RequestFactory.buildRequest(objectType.getLinkByRel("instances").getHref(),
+                        null, "GET", null, null, null, true);
+                    return executeFingerprinted(request, typeToken, previous, RequestClass.BACKGROUND);
+                  }
+                });
+          }
+        }, objectTypesKey(client));
       }
     });
   }
 
   /**
-   * Updates instance of specified object on Device Server.
+   * Returns lazy iterator over all instances of specified object. Instances are downloaded page by
+   * page as the iterator advances, see {@link Pager}.
+   * @param client instance of client from which objects will be queried.
+   * @param objectID in IPSO standard
+   * @param typeToken used to deserialize pages of instances
+   */
+  public <T extends Pojo> Pager<T> getInstancesPager(final Client client, final int objectID, final TypeToken<Instances<T>> typeToken) {
+    return new Pager<>(new Pager.Source<T>() {
+      @Override
+      public ListenableFuture<Instances<T>> load(String href, final int startIndex, final int pageSize) {
+        final RequestClass requestClass = pageClass(href, startIndex);
+        if (href != null) {
+          return executeAsync(RequestFactory.buildRequest(href, null, "GET", null, null, null, true), typeToken, requestClass);
+        }
+        return Futures.transformAsync(findObjectType(client, objectID, requestClass), new AsyncFunction<ObjectType, Instances<T>>() {
+          @Override
+          public ListenableFuture<Instances<T>> apply(ObjectType objectType) {
+            Map<String, String> queryParams = new HashMap<>();
+            queryParams.put("startIndex", Integer.toString(startIndex));
+            queryParams.put("pageSize", Integer.toString(pageSize));
+            Request request = RequestFactory.buildRequest(objectType.getLinkByRel("instances").getHref(), queryParams, "GET", null, null, null, true);
+            return executeAsync(request, typeToken, requestClass);
+          }
+        });
+      }
+    }, Pager.MIN_PAGE_SIZE);
+  }
+
+  /**
+   * Returns stream of instances of specified object, polled periodically using {@link PollingScheduler}.
+   * All subscriptions to the same client and object share one poller, which starts with the first
+   * subscription and stops when the last one is cancelled. Late subscribers immediately receive the last
+   * polled value. Observers are notified only when polled value changes. Body identical to the previous
+   * one is not parsed at all, see {@link #executeFingerprinted(Request, TypeToken, Fingerprinted, RequestClass)}.
+   * @param client instance of client from which objects will be observed.
+   * @param objectID in IPSO standard
+   * @param typeToken
+   * @param <T> type of item
+   */
+  public <T extends Pojo> Observable<Instances<T>> observe(final Client client, final int objectID,
+                                                            final TypeToken<Instances<T>> typeToken) {
+    final String key = objectTypesKey(client) + "#" + objectID;
+    return new Observable<Instances<T>>() {
+      @Override
+      public Subscription subscribe(Observer<Instances<T>> observer) {
+        return subscribeShared(key, observer, new SharedPoller<Instances<T>>() {
+          @Override
+          ListenableFuture<Fingerprinted<Instances<T>>> fetch(Fingerprinted<Instances<T>> previous) {
+            return pollInstances(client, objectID, typeToken, previous);
+          }
+
+          @Override
+          boolean isChanged(Instances<T> previous, Instances<T> current) {
+            return !gson.toJsonTree(previous, typeToken.getType()).equals(gson.toJsonTree(current, typeToken.getType()));
+          }
+        });
+      }
+    };
+  }
+
+  /**
+   * Subscribes observer to poller registered under specified key. If there is no such poller, specified
+   * one is registered and started.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> Subscription subscribeShared(final String key, final Observer<T> observer, SharedPoller<T> newPoller) {
+    final SharedPoller<T> poller;
+    synchronized (pollers) {
+      SharedPoller<T> registered = (SharedPoller<T>) pollers.get(key);
+      if (registered == null) {
+        registered = newPoller;
+        pollers.put(key, registered);
+        registered.addObserver(observer);
+        registered.start(pollingScheduler, key, OBSERVE_POLICY);
+      } else {
+        registered.addObserver(observer);
+      }
+      poller = registered;
+    }
+    T lastValue = poller.getLastValue();
+    if (lastValue != null) {
+      observer.onNext(lastValue);
+    }
+
+    return new Subscription() {
+      private boolean cancelled;
+
+      @Override
+      public void unsubscribe() {
+        synchronized (pollers) {
+          if (cancelled) {
+            return;
+          }
+          cancelled = true;
+          if (poller.removeObserver(observer) && pollers.get(key) == poller) {
+            pollers.remove(key);
+            poller.stop();
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Updates instance of specified object on Device Server. Updates run concurrently, so callers
+   * writing the same instance should wait for previous update to complete.
    * @param client instance
    * @param objectID in IPSO standard
    * @param instanceID number of object instance
@@ -291,28 +732,38 @@ public class DSService {
    * @return
    */
   public <T extends Pojo> ListenableFuture<EmptyResponse> updateInstance(final Client client, final int objectID, final int instanceID, final T data, final TypeToken<T> typeToken) {
-    final Runner<EmptyResponse> runner = new Runner<EmptyResponse>() {
+    return async("updateInstance", new Flow<EmptyResponse>() {
       @Override
-      public EmptyResponse action() {
-        updateInstanceInternal(client, objectID, instanceID, data, typeToken);
-        return new EmptyResponse();
-      }
-    };
-
-    return executor.submit(new Callable<EmptyResponse>() {
-      @Override
-      public EmptyResponse call() throws Exception {
-        return runner.call();
+      public ListenableFuture<EmptyResponse> start() {
+        final String rawData = gson.toJson(data, typeToken.getType());
+        return withStaleLinkRetry(new Flow<EmptyResponse>() {
+          @Override
+          public ListenableFuture<EmptyResponse> start() {
+            return Futures.transformAsync(findObjectType(client, objectID, RequestClass.INTERACTIVE), new AsyncFunction<ObjectType, EmptyResponse>() {
+              @Override
+              public ListenableFuture<EmptyResponse> apply(ObjectType objectType) {
+                Request request = RequestFactory.buildRequest(objectType.getLinkByRel("instances").getHref() + "/" + instanceID, null, "PUT", null, null, rawData, true);
+                return Futures.transform(executeAsync(request, EmptyResponse.class, RequestClass.INTERACTIVE), new Function<EmptyResponse, EmptyResponse>() {
+                  @Override
+                  public EmptyResponse apply(EmptyResponse input) {
+                    return new EmptyResponse();
+                  }
+                });
+              }
+            });
+          }
+        }, objectTypesKey(client));
       }
     });
   }
 
   private CreatorVoid loginInternal(String token, boolean rememberMe) {
+    awaitCacheEviction();
     clearAccessToken();
     Map<String, String> params = new HashMap<>();
 
     params.put("id_token", token);
-    Request request = buildRequest("https://developer-id.flowcloud.systems", null, "POST", null, params, null, false);
+    Request request = RequestFactory.buildRequest("https://developer-id.flowcloud.systems", null, "POST", null, params, null, false);
     IDPResult idpResult = null;
 
     idpResult = execute(request, IDPResult.class);
@@ -321,17 +772,16 @@ public class DSService {
       throw new UnauthorizedException();
     }
 
-    request = buildRequest(deviceServerURL, null, "GET", null, null, null, false);
-    Api api = execute(request, Api.class);
+    Api api = requestDeviceServerApi(false);
 
     params = new HashMap<>();
     params.put("username", idpResult.getKey());
     params.put("password", idpResult.getSecret());
     params.put("grant_type", "password");
-    request = buildRequest(api.getLinkByRel("authenticate").getHref(), null, "POST", null, params, null, false);
+    request = RequestFactory.buildRequest(api.getLinkByRel("authenticate").getHref(), null, "POST", null, params, null, false);
     OauthToken oauthToken = execute(request, OauthToken.class);
     saveAccessToken(oauthToken);
-    preferences.saveUserName(idpResult.getName());
+    sessionStore.setUserName(idpResult.getName());
     if (rememberMe) {
       preferences.setAutologin(true);
     }
@@ -340,117 +790,310 @@ public class DSService {
   }
 
   private CreatorVoid loginInternal(String refreshToken) {
+    awaitCacheEviction();
     clearAccessToken();
 
 
-    Request request = buildRequest(deviceServerURL, null, "GET", null, null, null, false);
-    Api api = execute(request, Api.class);
+    Api api = requestDeviceServerApi(false);
 
     Map<String,String> params = new HashMap<>();
     params.put("refresh_token", refreshToken);
     params.put("grant_type", "refresh_token");
-    request = buildRequest(api.getLinkByRel("authenticate").getHref(), null, "POST", null, params, null, false);
+    Request request = RequestFactory.buildRequest(api.getLinkByRel("authenticate").getHref(), null, "POST", null, params, null, false);
     OauthToken oauthToken = execute(request, OauthToken.class);
     saveAccessToken(oauthToken);
 
     return new CreatorVoid();
   }
 
+  /**
+   * Waits until responses cached during previous session are evicted, so new session never reads them.
+   * Eviction was submitted to {@link #executor} before the login task, so it is already running or
+   * next in queue.
+   */
+  private void awaitCacheEviction() {
+    Future<?> eviction = cacheEviction;
+    if (eviction != null) {
+      Futures.getUnchecked(eviction);
+    }
+  }
+
   private Api requestDeviceServerApi(boolean needAuthorization) {
-    Request request = buildRequest(deviceServerURL, null, "GET", null, null, null, needAuthorization);
-    return execute(request, Api.class);
+    return requestCached(needAuthorization ? AUTHORIZED_API_KEY : API_KEY, deviceServerURL, Api.class,
+        API_TTL, needAuthorization);
   }
 
-  private PSK generatePSKInternal() {
-    Api api = requestDeviceServerApi(true);
+  /**
+   * Returns document from {@link #linkCache} or downloads it and stores in cache if there is no valid entry.
+   * Document invalidated as stale is downloaded bypassing HTTP cache, which would return the same document.
+   */
+  private <T extends Pojo> T requestCached(String key, String url, Class<T> returnType, long ttl, boolean needAuthorization) {
+    T cached = linkCache.get(key, returnType);
+    if (cached != null) {
+      return cached;
+    }
+    T result = execute(cachedDocumentRequest(key, url, needAuthorization), returnType);
+    linkCache.put(key, result, ttl);
+    return result;
+  }
 
-    Request request = buildRequest(api.getLinkByRel("identities").getHref(), null, "GET", null, null, null, true);
-    Identities identities = execute(request, Identities.class);
+  /**
+   * Asynchronous counterpart of {@link #requestCached(String, String, Class, long, boolean)}.
+   */
+  private <T extends Pojo> ListenableFuture<T> requestCachedAsync(final String key, String url, Class<T> returnType,
+                                                                  final long ttl, boolean needAuthorization,
+                                                                  RequestClass requestClass) {
+    T cached = linkCache.get(key, returnType);
+    if (cached != null) {
+      return Futures.immediateFuture(cached);
+    }
+    Request request = cachedDocumentRequest(key, url, needAuthorization);
+    return Futures.transform(executeAsync(request, returnType, requestClass), new Function<T, T>() {
+      @Override
+      public T apply(T result) {
+        linkCache.put(key, result, ttl);
+        return result;
+      }
+    });
+  }
 
-    request = buildRequest(identities.getLinkByRel("psk").getHref(), null, "GET", null, null, null, true);
-    PSKs psks = execute(request, PSKs.class);
+  private Request cachedDocumentRequest(String key, String url, boolean needAuthorization) {
+    Request request = RequestFactory.buildRequest(url, null, "GET", null, null, null, needAuthorization);
+    if (linkCache.isInvalidated(key)) {
+      return request.newBuilder().cacheControl(CacheControl.FORCE_NETWORK).build();
+    }
+    return request;
+  }
 
-    request = buildRequest(psks.getLinkByRel("add").getHref(), null, "POST", null, null, "", true);
-    PSK psk = execute(request, PSK.class);
-    return psk;
+  private ListenableFuture<Api> requestDeviceServerApiAsync(boolean needAuthorization) {
+    return requestCachedAsync(needAuthorization ? AUTHORIZED_API_KEY : API_KEY, deviceServerURL, Api.class,
+        API_TTL, needAuthorization, RequestClass.FOREGROUND);
   }
 
-  private Bootstrap getBootstrapInternal() {
-    Api api = requestDeviceServerApi(true);
+  private ListenableFuture<PSK> generatePSK(Identities identities) {
+    Request request = RequestFactory.buildRequest(identities.getLinkByRel("psk").getHref(), null, "GET", null, null, null, true);
+    return Futures.transformAsync(executeAsync(request, PSKs.class, RequestClass.FOREGROUND), new AsyncFunction<PSKs, PSK>() {
+      @Override
+      public ListenableFuture<PSK> apply(PSKs psks) {
+        Request request = RequestFactory.buildRequest(psks.getLinkByRel("add").getHref(), null, "POST", null, null, "", true);
+        return executeAsync(request, PSK.class, RequestClass.INTERACTIVE);
+      }
+    });
+  }
 
-    Request request = buildRequest(api.getLinkByRel("configuration").getHref(), null, "GET", null, null, null, true);
-    Configuration configuration = execute(request, Configuration.class);
+  private ListenableFuture<Identities> requestIdentities() {
+    return Futures.transformAsync(requestDeviceServerApiAsync(true), new AsyncFunction<Api, Identities>() {
+      @Override
+      public ListenableFuture<Identities> apply(Api api) {
+        return requestCachedAsync(IDENTITIES_KEY, api.getLinkByRel("identities").getHref(), Identities.class,
+            IDENTITIES_TTL, true, RequestClass.FOREGROUND);
+      }
+    });
+  }
 
-    request = buildRequest(configuration.getLinkByRel("bootstrap").getHref(), null, "GET", null, null, null, true);
-    Bootstrap bootstrap = execute(request, Bootstrap.class);
+  private ListenableFuture<Configuration> requestConfiguration() {
+    return Futures.transformAsync(requestDeviceServerApiAsync(true), new AsyncFunction<Api, Configuration>() {
+      @Override
+      public ListenableFuture<Configuration> apply(Api api) {
+        return requestCachedAsync(CONFIGURATION_KEY, api.getLinkByRel("configuration").getHref(), Configuration.class,
+            CONFIGURATION_TTL, true, RequestClass.FOREGROUND);
+      }
+    });
+  }
+
+  private <T extends Pojo> ListenableFuture<T> requestInstances(ObjectType objectType, TypeToken typeToken,
+                                                                RequestClass requestClass) {
+    Request request = RequestFactory.buildRequest(objectType.getLinkByRel("instances").getHref(), null, "GET", null, null, null, true);
+    return executeAsync(request, typeToken, requestClass);
+  }
 
-    return bootstrap;
+  /**
+   * Looks up object type with specified id among object types registered by client. List of object types
+   * is taken from {@link #linkCache} when possible. Future fails with {@link NotFoundException} when client
+   * has not registered such object.
+   */
+  private ListenableFuture<ObjectType> findObjectType(Client client, final int objectID, RequestClass requestClass) {
+    return Futures.transform(requestObjectTypes(client, requestClass), new Function<ObjectTypes, ObjectType>() {
+      @Override
+      public ObjectType apply(ObjectTypes objectTypes) {
+        ObjectType objectType = findObjectType(objectTypes, objectID);
+        if (objectType == null) {
+          throw new NotFoundException("Could not find object with id " + objectID);
+        }
+        return objectType;
+      }
+    });
   }
 
-  private <T extends Pojo> Instances<T> getInstancesInternal(Client client, int objectID, TypeToken<Instances<T>> typeToken) {
-    Request request = buildRequest(client.getLinkByRel("objecttypes").getHref() + "?pageSize=1000", null, "GET", null, null, null, true);
-    ObjectTypes objectTypes = execute(request, ObjectTypes.class);
-    ObjectType objectType = null;
-    for (ObjectType objectTypeTmp : objectTypes.getItems()) {
-      if (objectTypeTmp.getObjectTypeID().equals(Integer.toString(objectID))) {
-        objectType = objectTypeTmp;
-        break;
+  private static ObjectType findObjectType(ObjectTypes objectTypes, int objectID) {
+    String id = Integer.toString(objectID);
+    for (ObjectType objectType : objectTypes.getItems()) {
+      if (objectType.getObjectTypeID().equals(id)) {
+        return objectType;
       }
     }
-    if (objectType == null) {
-      throw new NotFoundException("Could not find object with id " + objectID);
-    }
-    request = buildRequest(objectType.getLinkByRel("instances").getHref(), null, "GET", null, null, null, true);
+    return null;
+  }
 
-    Instances<T> instances = execute(request, typeToken);
-    return instances;
+  private ListenableFuture<ObjectTypes> requestObjectTypes(final Client client, RequestClass requestClass) {
+    ListenableFuture<ObjectTypes> objectTypes = requestCachedAsync(objectTypesKey(client),
+        client.getLinkByRel("objecttypes").getHref() + "?pageSize=1000", ObjectTypes.class, OBJECT_TYPES_TTL, true,
+        requestClass);
+    return Futures.catchingAsync(objectTypes, NotFoundException.class, new AsyncFunction<NotFoundException, ObjectTypes>() {
+      @Override
+      public ListenableFuture<ObjectTypes> apply(NotFoundException e) {
+        // links of disconnected client are no longer valid
+        clientIndex.invalidate(client.getName());
+        return Futures.immediateFailedFuture(e);
+      }
+    });
   }
 
-  private <T extends Pojo> void updateInstanceInternal(Client client, int objectID, int instanceID, T data, TypeToken<T> typeToken) {
-    Request request = buildRequest(client.getLinkByRel("objecttypes").getHref() + "?pageSize=1000", null, "GET", null, null, null, true);
-    ObjectTypes objectTypes = execute(request, ObjectTypes.class);
-    ObjectType objectType = null;
-    for (ObjectType objectTypeTmp : objectTypes.getItems()) {
-      if (objectTypeTmp.getObjectTypeID().equals(Integer.toString(objectID))) {
-        objectType = objectTypeTmp;
-        break;
+  private static String objectTypesKey(Client client) {
+    return OBJECT_TYPES_KEY_PREFIX + client.getLinkByRel("objecttypes").getHref();
+  }
+
+  /**
+   * @param adapter decodes page when it should be filtered, null for plain decoding
+   */
+  private ListenableFuture<Clients> requestClients(final int startIndex, final int pageSize,
+                                                   final TypeAdapter<Clients> adapter,
+                                                   final RequestClass requestClass) {
+    return withStaleLinkRetry(new Flow<Clients>() {
+      @Override
+      public ListenableFuture<Clients> start() {
+        return Futures.transformAsync(requestDeviceServerApiAsync(true), new AsyncFunction<Api, Clients>() {
+          @Override
+          public ListenableFuture<Clients> apply(Api api) {
+            Map<String, String> queryParams = new HashMap<>();
+            queryParams.put("startIndex", Integer.toString(startIndex));
+            queryParams.put("pageSize", Integer.toString(pageSize));
+            Request request = RequestFactory.buildRequest(api.getLinkByRel("clients").getHref(), queryParams, "GET", null, null, null, true);
+            return indexClients(DSService.this.<Clients>executeAsync(request, Clients.class, null, adapter, requestClass),
+                adapter != null);
+          }
+        });
       }
-    }
-    if (objectType == null) {
-      throw new NotFoundException("Could not find object with id " + objectID);
-    }
-    String rawData = gson.toJson(data, typeToken.getType());
-    request = buildRequest(objectType.getLinkByRel("instances").getHref() + "/" + instanceID, null, "PUT", null, null, rawData, true);
-    execute(request, EmptyResponse.class);
+    }, AUTHORIZED_API_KEY);
+  }
+
+  /**
+   * First page of collection is requested on behalf of the user, following pages are prefetched.
+   */
+  private static RequestClass pageClass(String href, int startIndex) {
+    return href == null && startIndex == 0 ? RequestClass.FOREGROUND : RequestClass.PREFETCH;
+  }
+
+  /**
+   * Adds every downloaded page of clients to {@link #clientIndex}.
+   */
+  private ListenableFuture<Clients> indexClients(ListenableFuture<Clients> clients, final boolean filtered) {
+    return Futures.transform(clients, new Function<Clients, Clients>() {
+      @Override
+      public Clients apply(Clients clients) {
+        clientIndex.update(clients, filtered);
+        return clients;
+      }
+    });
+  }
+
+  private ListenableFuture<Client> findClient(final Pager<Client> pager, final String clientName) {
+    return Futures.transformAsync(pager.nextPage(), new AsyncFunction<List<Client>, Client>() {
+      @Override
+      public ListenableFuture<Client> apply(List<Client> clients) {
+        if (clients == null) {
+          throw new NotFoundException("Could not find client with name : [" + clientName + "]");
+        }
+        for (Client client : clients) {
+          if (clientName.equals(client.getName())) {
+            return Futures.immediateFuture(client);
+          }
+        }
+        return findClient(pager, clientName);
+      }
+    });
   }
 
-  private Request buildRequest(String url, Map<String, String> queryParams, String method, Map<String, String> headers, Map<String, String> params, String rawData, boolean needAuthorization) {
-    Request.Builder builder = new Request.Builder();
-    if (queryParams != null) {
-      url += "?";
-      for (Map.Entry<String, String> entry : queryParams.entrySet()) {
-        url += entry.getKey() + "=" + entry.getValue() + "&";
+  private ListenableFuture<List<Client>> findClients(final Pager<Client> pager, final Predicate<? super Client> filter,
+                                                     final int limit, final List<Client> result) {
+    return Futures.transformAsync(pager.nextPage(), new AsyncFunction<List<Client>, List<Client>>() {
+      @Override
+      public ListenableFuture<List<Client>> apply(List<Client> clients) {
+        if (clients == null) {
+          return Futures.immediateFuture(result);
+        }
+        for (Client client : clients) {
+          if (filter.apply(client)) {
+            result.add(client);
+            if (result.size() >= limit) {
+              return Futures.immediateFuture(result);
+            }
+          }
+        }
+        return findClients(pager, filter, limit, result);
       }
+    });
+  }
+
+  /**
+   * Starts flow again when it fails with {@link NotFoundException} and any of specified {@link #linkCache}
+   * entries was valid when it started or HTTP cache is used: links taken from cached documents may be
+   * stale. Entries are invalidated before the retry, so the retry downloads them bypassing both caches.
+   */
+  private <T> ListenableFuture<T> withStaleLinkRetry(final Flow<T> flow, final String... keys) {
+    // document kept by HTTP cache may be stale even when it is not in link cache, e.g. after restart
+    boolean cached = httpCache != null;
+    for (String key : keys) {
+      cached |= linkCache.contains(key);
     }
-    builder.url(url);
-    if (headers != null) {
-      builder.headers(Headers.of(headers));
+    ListenableFuture<T> future = flow.start();
+    if (!cached) {
+      return future;
     }
-    if (params != null) {
-      FormBody.Builder bodyBuilder = new FormBody.Builder();
-      for (Map.Entry<String, String> entry : params.entrySet()) {
-        bodyBuilder.addEncoded(entry.getKey(), entry.getValue());
+    return Futures.catchingAsync(future, NotFoundException.class, new AsyncFunction<NotFoundException, T>() {
+      @Override
+      public ListenableFuture<T> apply(NotFoundException e) {
+        for (String key : keys) {
+          linkCache.invalidate(key);
+        }
+        return flow.start();
       }
-      builder.method(method, bodyBuilder.build());
-    } else if (rawData != null) {
-      builder.method(method, RequestBody.create(MediaType.parse("application/json"), rawData));
-    } else {
-      builder.method(method, null);
-    }
-    builder.tag(needAuthorization);
+    });
+  }
 
-    return builder.build();
+  /**
+   * Starts flow making sure that returned future fails only with {@link DeviceServerException}. Whole flow
+   * is traced as span with specified name, spans of its requests become children of it.
+   */
+  private <T> ListenableFuture<T> async(String name, Flow<T> flow) {
+    final Tracer.Span span = tracer.startSpan(name);
+    Tracer.Span previous = tracer.setCurrent(span);
+    ListenableFuture<T> future;
+    try {
+      future = flow.start();
+    } catch (RuntimeException e) {
+      future = Futures.immediateFailedFuture(e);
+    } finally {
+      tracer.setCurrent(previous);
+    }
+    future = Futures.catchingAsync(future, Throwable.class, new AsyncFunction<Throwable, T>() {
+      @Override
+      public ListenableFuture<T> apply(Throwable t) {
+        return Futures.immediateFailedFuture(t instanceof DeviceServerException ? t : new UnknownException(t));
+      }
+    });
+    Futures.addCallback(future, new FutureCallback<T>() {
+      @Override
+      public void onSuccess(T result) {
+        span.end();
+      }
 
+      @Override
+      public void onFailure(Throwable t) {
+        span.tag("error", t.getClass().getSimpleName()).end();
+      }
+    });
+    return future;
   }
 
   private <T extends Pojo> T execute(Request request, TypeToken token) {
@@ -462,84 +1105,389 @@ public class DSService {
     return execute(request, returnType, null);
   }
 
-  private <T extends Pojo> T execute(Request request, Class<T> returnType, TypeToken token) {
-    Response response = null;
-    try {
-      response = client.newCall(request).execute();
-      if (response.code() >= 200 && response.code() < 300) {
+  /**
+   * Executes request and decodes its response. Concurrent identical GETs (same URL, authorization and
+   * result type) share single call, see {@link RequestCoalescer}.
+   */
+  private <T extends Pojo> T execute(final Request request, final Class<T> returnType, final TypeToken token) {
+    if (!"GET".equals(request.method())) {
+      return executeCall(request, returnType, token);
+    }
+    return coalescer.execute(requestKey(request, returnType, token, null), new Callable<T>() {
+      @Override
+      public T call() {
+        return executeCall(request, returnType, token);
+      }
+    });
+  }
+
+  private <T extends Pojo> ListenableFuture<T> executeAsync(Request request, TypeToken token, RequestClass requestClass) {
+    return executeAsync(request, null, token, null, requestClass);
+  }
+
+  private <T extends Pojo> ListenableFuture<T> executeAsync(Request request, Class<T> returnType, RequestClass requestClass) {
+    return executeAsync(request, returnType, null, null, requestClass);
+  }
+
+  /**
+   * Asynchronous counterpart of {@link #execute(Request, Class, TypeToken)}: request is enqueued in OkHttp
+   * dispatcher, so no thread waits for the response. Calls are started in order decided by
+   * {@link #priorityDispatcher}. Coalesced call keeps class of the caller that started it.
+   * @param adapter decodes response instead of adapter of returnType or token when not null
+   */
+  private <T extends Pojo> ListenableFuture<T> executeAsync(final Request request, final Class<T> returnType,
+                                                            final TypeToken token, final TypeAdapter<T> adapter,
+                                                            final RequestClass requestClass) {
+    final ResponseHandler<T> handler = new ResponseHandler<T>() {
+      @Override
+      public T handle(Request request, Response response) throws IOException {
+        return DSService.this.<T>handleResponse(request, response, returnType, token, adapter);
+      }
+    };
+    if (!"GET".equals(request.method())) {
+      return enqueue(request, handler, requestClass);
+    }
+    return coalescer.executeAsync(requestKey(request, returnType, token, adapter), new RequestCoalescer.AsyncCall<T>() {
+      @Override
+      public ListenableFuture<T> start() {
+        return enqueue(request, handler, requestClass);
+      }
+    });
+  }
+
+  /**
+   * Enqueues GET request whose body is fingerprinted before decoding. When fingerprint equals the one of
+   * previous response, the body is not parsed and previous value is returned marked as unchanged.
+   * Fingerprint is computed over raw bytes, so it does not depend on order of fields in decoded objects.
+   * @param previous result of the previous poll of the same resource, may be null
+   */
+  private <T> ListenableFuture<Fingerprinted<T>> executeFingerprinted(final Request request, final TypeToken<T> token,
+                                                                      final Fingerprinted<T> previous,
+                                                                      final RequestClass requestClass) {
+    final ResponseHandler<Fingerprinted<T>> handler = new ResponseHandler<Fingerprinted<T>>() {
+      @Override
+      public Fingerprinted<T> handle(Request request, Response response) throws IOException {
+        Fingerprinted<T> result = DSService.this.handleFingerprinted(request, response, token, previous);
+        pollStats.record(result);
+        return result;
+      }
+    };
+    String key = requestKey(request, null, token, null) + " fingerprint "
+        + (previous != null ? previous.getFingerprint() : null);
+    return coalescer.executeAsync(key, new RequestCoalescer.AsyncCall<Fingerprinted<T>>() {
+      @Override
+      public ListenableFuture<Fingerprinted<T>> start() {
+        return enqueue(request, handler, requestClass);
+      }
+    });
+  }
+
+  /**
+   * Enqueues request. Request is traced as child of current span, which is restored while the returned
+   * future completes, so following requests of the same flow are its children too.
+   */
+  private <T> ListenableFuture<T> enqueue(final Request request, final ResponseHandler<T> handler,
+                                          final RequestClass requestClass) {
+    final SettableFuture<T> future = SettableFuture.create();
+    final Call call = client.newCall(request);
+    final Tracer.Span parent = tracer.current();
+    final Tracer.Span span = tracer.startSpan(spanName(request), parent).tag("class", requestClass);
+    callSpans.put(request, span);
+    final AtomicBoolean slotReleased = new AtomicBoolean();
+    final Runnable releaseSlot = new Runnable() {
+      @Override
+      public void run() {
+        if (slotReleased.compareAndSet(false, true)) {
+          priorityDispatcher.finished(requestClass);
+        }
+      }
+    };
+    final Callback callback = new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        releaseSlot.run();
+        callSpans.remove(request);
+        span.tag("error", e.getClass().getSimpleName()).end();
+        Tracer.Span previous = tracer.setCurrent(parent);
         try {
-          String responseBody = response.body().string();
-          System.out.println(responseBody);
-          if (token != null)
-            return gson.fromJson(responseBody, token.getType());
-          else
-            return gson.fromJson(responseBody, returnType);
-        } catch (JsonSyntaxException e) {
-          throw new ParseException();
+          future.setException(failureOf(e));
+        } finally {
+          tracer.setCurrent(previous);
         }
       }
-      switch (response.code()) {
-        case 401:
-          throw new UnauthorizedException();
-        case 404:
-          throw new NotFoundException();
-        case 409:
-          throw new ConflictException();
-        default:
-          throw new UnknownException();
 
+      @Override
+      public void onResponse(Call call, Response response) {
+        T result = null;
+        RuntimeException error = null;
+        callSpans.remove(request);
+        span.tag("status", response.code());
+        Tracer.Span previous = tracer.setCurrent(span);
+        try {
+          result = handler.handle(request, response);
+        } catch (IOException e) {
+          error = failureOf(e);
+        } catch (DeviceServerException e) {
+          error = e;
+        } catch (RuntimeException e) {
+          error = new UnknownException(e);
+        } finally {
+          // release slot before continuations of this call submit their requests
+          releaseSlot.run();
+        }
+        span.end();
+        tracer.setCurrent(parent);
+        try {
+          if (error != null) {
+            future.setException(error);
+          } else {
+            future.set(result);
+          }
+        } finally {
+          tracer.setCurrent(previous);
+        }
       }
+    };
+    final long queuedAt = System.nanoTime();
+    final PriorityDispatcher.Job job = priorityDispatcher.submit(requestClass, new Runnable() {
+      @Override
+      public void run() {
+        span.tag("queueWaitMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedAt));
+        try {
+          call.enqueue(callback);
+        } catch (RuntimeException e) {
+          releaseSlot.run();
+          callSpans.remove(request);
+          span.tag("error", e.getClass().getSimpleName()).end();
+          future.setException(new UnknownException(e));
+        }
+      }
+    });
+    future.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (future.isCancelled()) {
+          if (job.cancel()) {
+            callSpans.remove(request);
+            span.tag("cancelled", true).end();
+          } else {
+            call.cancel();
+          }
+        }
+      }
+    }, MoreExecutors.directExecutor());
+    return future;
+  }
+
+  private static String spanName(Request request) {
+    return NetworkMetrics.templateOf(request);
+  }
+
+  /**
+   * Key of call shared by {@link #coalescer}. Authorized calls are keyed by session they were sent in, so
+   * call of previous session is never joined after logout or login.
+   */
+  private String requestKey(Request request, Class<?> returnType, TypeToken token, TypeAdapter<?> adapter) {
+    String result = adapter != null ? adapter.toString() : token != null ? token.getType().toString() : returnType.getName();
+    String authorization = Boolean.TRUE.equals(request.tag()) ? "session-" + tokenManager.getSessionGeneration() : "anonymous";
+    return request.method() + " " + request.url() + " " + authorization + " " + request.cacheControl() + " " + result;
+  }
+
+  private <T extends Pojo> T executeCall(Request request, Class<T> returnType, TypeToken token) {
+    Tracer.Span span = tracer.startSpan(spanName(request));
+    Tracer.Span previous = tracer.setCurrent(span);
+    try {
+      Response response = client.newCall(request).execute();
+      span.tag("status", response.code());
+      return handleResponse(request, response, returnType, token, null);
     } catch (IOException e) {
-      throw new NetworkException();
+      span.tag("error", e.getClass().getSimpleName());
+      throw failureOf(e);
+    } finally {
+      tracer.setCurrent(previous);
+      span.end();
     }
   }
 
+  /**
+   * Wraps callable, so it is traced as root span with specified name.
+   */
+  private <T> Callable<T> traced(final String name, final Callable<T> callable) {
+    return new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        Tracer.Span span = tracer.startSpan(name, null);
+        Tracer.Span previous = tracer.setCurrent(span);
+        try {
+          return callable.call();
+        } finally {
+          tracer.setCurrent(previous);
+          span.end();
+        }
+      }
+    };
+  }
 
-  private Client getClientInternal(String clientName) {
-    Clients clients = clientsInternal(0, 1000);
-    for (Client client : clients.getItems()) {
-      if (client.getName().equals(clientName)) {
-        return client;
+  /**
+   * Decodes successful response or maps error status to {@link DeviceServerException}. Closes response body.
+   */
+  private <T extends Pojo> T handleResponse(Request request, Response response, Class<T> returnType, TypeToken token,
+                                            TypeAdapter<T> adapter) throws IOException {
+    if (response.code() >= 200 && response.code() < 300) {
+      try {
+        if (bodyLoggingEnabled) {
+          logBody(request, response);
+        }
+        if (adapter != null) {
+          return decode(response.body(), adapter);
+        }
+        TypeToken<?> type = token != null ? token : TypeToken.get(returnType);
+        return decode(response.body(), type);
+      } finally {
+        response.body().close();
+      }
+    }
+    throw errorOf(response);
+  }
+
+  /**
+   * Like {@link #handleResponse(Request, Response, Class, TypeToken, TypeAdapter)}, but reads whole body
+   * and compares its fingerprint with the previous one before decoding. Closes response body.
+   */
+  private <T> Fingerprinted<T> handleFingerprinted(Request request, Response response, TypeToken<T> token,
+                                                   Fingerprinted<T> previous) throws IOException {
+    if (response.code() < 200 || response.code() >= 300) {
+      throw errorOf(response);
+    }
+    byte[] bytes;
+    HashCode fingerprint;
+    try {
+      if (bodyLoggingEnabled) {
+        logBody(request, response);
       }
+      HashingInputStream in = new HashingInputStream(Hashing.murmur3_128(), response.body().byteStream());
+      bytes = ByteStreams.toByteArray(in);
+      fingerprint = in.hash();
+    } finally {
+      response.body().close();
+    }
+    if (previous != null && fingerprint.equals(previous.getFingerprint())) {
+      return previous.asUnchanged();
+    }
+    MediaType contentType = response.body().contentType();
+    Charset charset = contentType != null ? contentType.charset(Charsets.UTF_8) : Charsets.UTF_8;
+    Tracer.Span span = tracer.startSpan("parse");
+    try {
+      T value = decoder.decode(new InputStreamReader(new ByteArrayInputStream(bytes), charset), token);
+      return new Fingerprinted<>(value, fingerprint, false);
+    } finally {
+      span.end();
     }
-    throw new NotFoundException("Could not find client with name : [" + clientName + "]");
   }
 
+  /**
+   * Maps failure of call to {@link DeviceServerException}. Exceptions thrown by interceptors and authenticator
+   * come wrapped in {@link UncheckedCallException} and are unwrapped, other I/O errors are network errors.
+   */
+  private static DeviceServerException failureOf(IOException e) {
+    if (e instanceof UncheckedCallException) {
+      RuntimeException cause = ((UncheckedCallException) e).getCause();
+      return cause instanceof DeviceServerException ? (DeviceServerException) cause : new UnknownException(cause);
+    }
+    return new NetworkException(e);
+  }
 
-  private Clients clientsInternal(int startIndex, int pageSize) {
+  /**
+   * Maps error status of response to {@link DeviceServerException}. Closes response body.
+   */
+  private static DeviceServerException errorOf(Response response) {
+    response.body().close();
+    switch (response.code()) {
+      case 401:
+        return new UnauthorizedException();
+      case 404:
+      case 410:
+        return new NotFoundException();
+      case 409:
+        return new ConflictException();
+      default:
+        return new UnknownException();
 
-    Request request = buildRequest(deviceServerURL, null, "GET", null, null, null, true);
-    Api api = execute(request, Api.class);
-    Map<String, String> queryParams = new HashMap<>();
-    queryParams.put("startIndex", Integer.toString(startIndex));
-    queryParams.put("pageSize", Integer.toString(pageSize));
-    request = buildRequest(api.getLinkByRel("clients").getHref(), queryParams, "GET", null, null, null, true);
-    Clients clients = execute(request, Clients.class);
-    return clients;
+    }
   }
 
-  private OauthToken refreshToken() {
-    Request request = buildRequest(deviceServerURL, null, "GET", null, null, null, false);
-    Api api = execute(request, Api.class);
 
-    Map<String, String> params = new HashMap<>();
-    params.put("refresh_token", preferences.getRefreshToken());
-    params.put("grant_type", "refresh_token");
-    request = buildRequest(api.getLinkByRel("authenticate").getHref(), null, "POST", null, params, null, false);
-    OauthToken oauthToken = execute(request, OauthToken.class);
-    return oauthToken;
+  /**
+   * Decodes payload straight from the body's character stream, see {@link JsonDecoder}.
+   */
+  private <T extends Pojo> T decode(ResponseBody body, TypeToken<?> type) throws IOException {
+    Tracer.Span span = tracer.startSpan("parse");
+    try {
+      return decoder.decode(body.charStream(), type);
+    } finally {
+      span.end();
+    }
+  }
+
+  private <T extends Pojo> T decode(ResponseBody body, TypeAdapter<T> adapter) throws IOException {
+    Tracer.Span span = tracer.startSpan("parse");
+    try {
+      return decoder.decode(body.charStream(), adapter);
+    } finally {
+      span.end();
+    }
+  }
+
+  private void logBody(Request request, Response response) {
+    try {
+      ResponseBody peeked = response.peekBody(MAX_LOGGED_BODY_BYTES);
+      LOGGER.debug("{} {} -> {}", request.method(), request.url(), peeked.string());
+    } catch (IOException e) {
+      LOGGER.debug("{} {} -> body could not be read", request.method(), request.url());
+    }
+  }
+
+  private OauthToken refreshToken(String refreshToken) {
+    Tracer.Span span = tracer.startSpan("refreshToken");
+    Tracer.Span previous = tracer.setCurrent(span);
+    try {
+      Api api = requestDeviceServerApi(false);
+
+      Map<String, String> params = new HashMap<>();
+      params.put("refresh_token", refreshToken);
+      params.put("grant_type", "refresh_token");
+      Request request = RequestFactory.buildRequest(api.getLinkByRel("authenticate").getHref(), null, "POST", null, params, null, false);
+      OauthToken oauthToken = execute(request, OauthToken.class);
+      return oauthToken;
+    } finally {
+      tracer.setCurrent(previous);
+      span.end();
+    }
   }
 
   private void saveAccessToken(OauthToken oauthToken) {
-    preferences.setAccessToken(oauthToken.getAccessToken());
-    preferences.setAccessTokenExpiry(System.currentTimeMillis() + 1000 * oauthToken.getExpiresIn());
-    preferences.setRefreshToken(oauthToken.getRefreshToken());
+    tokenManager.setToken(oauthToken);
   }
 
   private void clearAccessToken() {
-    preferences.setAccessToken("");
-    preferences.setAccessTokenExpiry(0);
-    preferences.setRefreshToken("");
+    // authorized documents belong to previous session
+    linkCache.invalidateAll();
+    clientIndex.invalidateAll();
+    tokenManager.clear();
+  }
+
+  /**
+   * Asynchronous Device Server operation that can be started again, e.g. when it ran into stale link.
+   */
+  interface Flow<T> {
+    ListenableFuture<T> start();
+  }
+
+  /**
+   * Turns response of enqueued call into its result. Throws {@link DeviceServerException} on error status.
+   */
+  interface ResponseHandler<T> {
+    T handle(Request request, Response response) throws IOException;
   }
 
   static abstract class Runner<T extends Pojo> implements Callable {
@@ -565,61 +1513,176 @@ public class DSService {
 
   /**
    * Reacts on 401 response from server and requests for new OAuth token from Device Server.
+   * Refresh is delegated to {@link TokenManager}, so concurrent 401s result in a single refresh.
    */
   static class Authenticator1 implements Authenticator {
 
-    DSService caller;
-    Preferences preferences;
+    private final TokenManager tokenManager;
 
-    Authenticator1(DSService caller, Preferences preferences) {
-      this.caller = caller;
-      this.preferences = preferences;
+    Authenticator1(TokenManager tokenManager) {
+      this.tokenManager = tokenManager;
     }
 
     @Override
     public Request authenticate(Route route, Response response) throws IOException {
-      if (!response.request().url().toString().contains("oauth")) {
-        OauthToken token = caller.refreshToken();
-        preferences.setAccessToken(token.getAccessToken());
-        preferences.setAccessTokenExpiry(System.currentTimeMillis() + 1000 * token.getExpiresIn());
-        preferences.setRefreshToken(token.getRefreshToken());
-        String newToken = token.getAccessToken();
-        return response.request().newBuilder()
-            .addHeader("Authorization", "Bearer " + newToken)
-            .build();
+      if (response.request().url().toString().contains("oauth") || response.priorResponse() != null) {
+        return null;
       }
-      return null;
+      String newToken;
+      try {
+        newToken = tokenManager.onUnauthorized(response.sentRequestAtMillis());
+      } catch (RuntimeException e) {
+        // OkHttp reports only I/O errors to callbacks of enqueued calls
+        throw new UncheckedCallException(e);
+      }
+      return response.request().newBuilder()
+          .header("Authorization", "Bearer " + newToken)
+          .build();
     }
   }
 
   /**
-   * An OkHttp interceptor that adds 'Authorization' header to requests.
+   * Carries unchecked exception out of OkHttp call. Enqueued calls report only {@link IOException}
+   * to their callbacks, any other exception would leave the callback uncalled and crash OkHttp thread.
+   */
+  static class UncheckedCallException extends IOException {
+
+    UncheckedCallException(RuntimeException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized RuntimeException getCause() {
+      return (RuntimeException) super.getCause();
+    }
+  }
+
+  /**
+   * First application interceptor, wraps unchecked exceptions thrown by the rest of the chain in
+   * {@link UncheckedCallException}, so every call completes through its callback.
+   */
+  static class UncheckedExceptionInterceptor implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      try {
+        return chain.proceed(chain.request());
+      } catch (RuntimeException e) {
+        throw new UncheckedCallException(e);
+      }
+    }
+  }
+
+  /**
+   * Makes span of enqueued call current on OkHttp thread executing it, so spans started by interceptors
+   * and authenticator (token refresh) become its children.
+   */
+  static class TraceInterceptor implements Interceptor {
+
+    private final Tracer tracer;
+    private final Map<Request, Tracer.Span> callSpans;
+
+    TraceInterceptor(Tracer tracer, Map<Request, Tracer.Span> callSpans) {
+      this.tracer = tracer;
+      this.callSpans = callSpans;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      Tracer.Span span = callSpans.get(chain.request());
+      if (span == null) {
+        return chain.proceed(chain.request());
+      }
+      Tracer.Span previous = tracer.setCurrent(span);
+      try {
+        return chain.proceed(chain.request());
+      } finally {
+        tracer.setCurrent(previous);
+      }
+    }
+  }
+
+  /**
+   * An OkHttp interceptor that adds 'Authorization' header to requests. Requests sent without it neither
+   * read nor write HTTP cache: cache is keyed by URL only, so unauthorized variant of a document, e.g. root
+   * document without "clients" link, would be returned to authorized requests and vice versa.
    */
   static class OAuthInterceptor implements Interceptor {
 
-    private Preferences preferences;
-    private DSService caller;
+    private static final CacheControl NO_STORE = new CacheControl.Builder().noStore().build();
 
-    OAuthInterceptor(DSService caller, Preferences preferences) {
-      this.preferences = preferences;
-      this.caller = caller;
+    private final TokenManager tokenManager;
+
+    OAuthInterceptor(TokenManager tokenManager) {
+      this.tokenManager = tokenManager;
     }
 
     @Override
     public Response intercept(Chain chain) throws IOException {
       Request originalRequest = chain.request();
-      long accesTokenExpiryTime = preferences.getAccessTokenExpiryTime();
       if (((Boolean) originalRequest.tag())) {
-        if (accesTokenExpiryTime <= System.currentTimeMillis() - 10 * 1000) {
-          OauthToken token = caller.refreshToken();
-          caller.saveAccessToken(token);
+        String accessToken;
+        try {
+          accessToken = tokenManager.getAccessToken();
+        } catch (RuntimeException e) {
+          throw new UncheckedCallException(e);
         }
         Request authorisedRequest = originalRequest.newBuilder()
-            .header("Authorization", "Bearer " + preferences.getAccessToken())
+            .header("Authorization", "Bearer " + accessToken)
             .build();
         return chain.proceed(authorisedRequest);
       }
-      return chain.proceed(originalRequest);
+      return chain.proceed(originalRequest.newBuilder().cacheControl(NO_STORE).build());
+    }
+  }
+
+  /**
+   * Makes responses that come without validators and caching headers cacheable for a time
+   * depending on resource class, see {@link #FRESHNESS_RULES}. Responses with validators are left
+   * untouched, so they are revalidated with conditional requests.
+   */
+  static class FreshnessInterceptor implements Interceptor {
+
+    private final Map<Pattern, Integer> rules;
+
+    FreshnessInterceptor(Map<Pattern, Integer> rules) {
+      this.rules = rules;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      Request request = chain.request();
+      Response response = chain.proceed(request);
+      if (!"GET".equals(request.method()) || response.code() != 200
+          || response.header("ETag") != null || response.header("Last-Modified") != null
+          || response.header("Cache-Control") != null || response.header("Expires") != null) {
+        return response;
+      }
+      String path = request.url().encodedPath();
+      for (Map.Entry<Pattern, Integer> rule : rules.entrySet()) {
+        if (rule.getKey().matcher(path).matches()) {
+          return response.newBuilder()
+              .header("Cache-Control", "private, max-age=" + rule.getValue())
+              .build();
+        }
+      }
+      return response;
+    }
+  }
+
+  static class CacheStatsInterceptor implements Interceptor {
+
+    private final HttpCacheStats stats;
+
+    CacheStatsInterceptor(HttpCacheStats stats) {
+      this.stats = stats;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      Response response = chain.proceed(chain.request());
+      stats.record(response);
+      return response;
     }
   }
 
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.base.Predicate;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.imgtec.creator.iup.ds.pojo.Client;
+import com.imgtec.creator.iup.ds.pojo.Clients;
+import com.imgtec.creator.iup.ds.pojo.Link;
+import com.imgtec.creator.iup.ds.pojo.PageInfo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes page of clients keeping only clients whose names are accepted by filter. Filter runs as soon
+ * as client's "Name" is read, the rest of rejected client is skipped token by token, so no {@link Client},
+ * {@link Link} or link strings are created for it and decoding cost follows number of matches rather
+ * than page size. Device Server writes "Name" before "Links"; when links come first they are decoded
+ * before the client can be judged.
+ *
+ * Page info and page links are kept intact, so paging over filtered pages works as over full ones.
+ */
+class FilteringClientsAdapter extends TypeAdapter<Clients> {
+
+  private static final TypeToken<List<Link>> LINKS_TYPE = new TypeToken<List<Link>>() {
+  };
+
+  private final Predicate<String> nameFilter;
+  private final TypeAdapter<PageInfo> pageInfoAdapter;
+  private final TypeAdapter<List<Link>> linksAdapter;
+
+  /**
+   * @param nameFilter decides which clients are decoded, called with null for clients without name
+   */
+  FilteringClientsAdapter(Gson gson, Predicate<String> nameFilter) {
+    this.nameFilter = nameFilter;
+    this.pageInfoAdapter = gson.getAdapter(PageInfo.class);
+    this.linksAdapter = gson.getAdapter(LINKS_TYPE);
+  }
+
+  @Override
+  public void write(JsonWriter out, Clients clients) throws IOException {
+    throw new UnsupportedOperationException("Filtered pages are never sent to Device Server");
+  }
+
+  @Override
+  public Clients read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    Clients clients = new Clients();
+    List<Client> items = new ArrayList<>();
+    in.beginObject();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        continue;
+      }
+      switch (name) {
+        case "PageInfo":
+          clients.setPageInfo(pageInfoAdapter.read(in));
+          break;
+        case "Items":
+          in.beginArray();
+          while (in.hasNext()) {
+            Client client = readClient(in);
+            if (client != null) {
+              items.add(client);
+            }
+          }
+          in.endArray();
+          break;
+        case "Links":
+          clients.setLinks(linksAdapter.read(in));
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+    clients.setItems(items);
+    return clients;
+  }
+
+  /**
+   * @return decoded client or null when it was rejected by filter
+   */
+  private Client readClient(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    String clientName = null;
+    boolean named = false;
+    List<Link> links = null;
+    in.beginObject();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      switch (name) {
+        case "Name":
+          if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+          } else {
+            clientName = in.nextString();
+          }
+          named = true;
+          if (!nameFilter.apply(clientName)) {
+            skipRest(in);
+            return null;
+          }
+          break;
+        case "Links":
+          links = linksAdapter.read(in);
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+    if (!named && !nameFilter.apply(null)) {
+      return null;
+    }
+    Client client = new Client();
+    client.setName(clientName);
+    if (links != null) {
+      client.setLinks(links);
+    }
+    return client;
+  }
+
+  private static void skipRest(JsonReader in) throws IOException {
+    while (in.hasNext()) {
+      in.skipValue();
+      in.skipValue();
+    }
+    in.endObject();
+  }
+
+  @Override
+  public String toString() {
+    // identifies decoded result when identical requests are coalesced
+    return "Clients filtered by " + nameFilter;
+  }
+}
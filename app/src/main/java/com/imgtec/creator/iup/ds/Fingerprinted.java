@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.hash.HashCode;
+
+/**
+ * Decoded response together with fingerprint of its raw body. When body of the next poll has the same
+ * fingerprint, its decoded value is reused instead of parsing the body again.
+ */
+final class Fingerprinted<T> {
+
+  private final T value;
+  private final HashCode fingerprint;
+  private final boolean unchanged;
+
+  Fingerprinted(T value, HashCode fingerprint, boolean unchanged) {
+    this.value = value;
+    this.fingerprint = fingerprint;
+    this.unchanged = unchanged;
+  }
+
+  T getValue() {
+    return value;
+  }
+
+  HashCode getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * @return true when body was identical to the previous one and value was taken from it
+   */
+  boolean isUnchanged() {
+    return unchanged;
+  }
+
+  Fingerprinted<T> asUnchanged() {
+    return unchanged ? this : new Fingerprinted<>(value, fingerprint, true);
+  }
+}
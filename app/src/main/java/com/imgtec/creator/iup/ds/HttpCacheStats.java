@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Response;
+
+/**
+ * Counts how Device Server GETs were served by HTTP disk cache: straight from cache, revalidated
+ * with conditional request (304) or downloaded in full.
+ *
+ * This class is thread safe.
+ */
+public class HttpCacheStats {
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong revalidations = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong savedBytes = new AtomicLong();
+
+  HttpCacheStats() {
+  }
+
+  void record(Response response) {
+    if (!"GET".equals(response.request().method())) {
+      return;
+    }
+    Response networkResponse = response.networkResponse();
+    if (response.cacheResponse() == null) {
+      misses.incrementAndGet();
+      return;
+    }
+    if (networkResponse == null) {
+      hits.incrementAndGet();
+    } else if (networkResponse.code() == 304) {
+      revalidations.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
+      return;
+    }
+    long length = response.body() != null ? response.body().contentLength() : -1;
+    if (length > 0) {
+      savedBytes.addAndGet(length);
+    }
+  }
+
+  /**
+   * @return number of responses served from cache without contacting Device Server
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * @return number of cached responses confirmed by Device Server with 304
+   */
+  public long getRevalidationCount() {
+    return revalidations.get();
+  }
+
+  /**
+   * @return number of responses downloaded in full
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * @return number of body bytes that did not have to be downloaded thanks to cache
+   */
+  public long getSavedBytes() {
+    return savedBytes.get();
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import com.imgtec.creator.iup.ds.exceptions.ParseException;
+import com.imgtec.creator.iup.ds.pojo.Link;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes Device Server payloads with adapters cached per type. Kept free of Android dependencies, so it
+ * can be benchmarked on plain JVM.
+ *
+ * This class is thread safe.
+ */
+class JsonDecoder {
+
+  private final Gson gson;
+  private final Map<TypeToken<?>, TypeAdapter<?>> adapters = new ConcurrentHashMap<>();
+
+  JsonDecoder(Gson gson) {
+    this.gson = gson;
+  }
+
+  /**
+   * @return Gson configured for Device Server payloads
+   */
+  static Gson createGson() {
+    return new GsonBuilder()
+        .registerTypeAdapter(Link.class, new LinkTypeAdapter())
+        .create();
+  }
+
+  /**
+   * Decodes payload straight from character stream using adapter cached for requested type.
+   * Mirrors {@link Gson#fromJson(JsonReader, java.lang.reflect.Type)}: empty payload is decoded as null.
+   * @throws ParseException when payload does not match requested type
+   */
+  @SuppressWarnings("unchecked")
+  <T> T decode(Reader in, TypeToken<?> type) throws IOException {
+    TypeAdapter<?> adapter = adapters.get(type);
+    if (adapter == null) {
+      adapter = gson.getAdapter(type);
+      adapters.put(type, adapter);
+    }
+    return (T) decode(in, adapter);
+  }
+
+  /**
+   * Decodes payload with specified adapter, e.g. one that skips part of the payload.
+   * @throws ParseException when payload does not match adapter
+   */
+  <T> T decode(Reader in, TypeAdapter<T> adapter) throws IOException {
+    JsonReader reader = new JsonReader(in);
+    reader.setLenient(true);
+    boolean isEmpty = true;
+    try {
+      reader.peek();
+      isEmpty = false;
+      return adapter.read(reader);
+    } catch (EOFException e) {
+      if (isEmpty) {
+        return null;
+      }
+      throw new ParseException(e);
+    } catch (MalformedJsonException | IllegalStateException | JsonParseException e) {
+      throw new ParseException(e);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.imgtec.creator.iup.ds.pojo.Pojo;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of Device Server documents that are only fetched to resolve links to other
+ * resources (root {@link com.imgtec.creator.iup.ds.pojo.Api}, configuration, identities and per client
+ * object types). Every entry has its own time to live, entries can be dropped when a link taken from
+ * them turns out to be stale (404/410). Document invalidated this way is stale in HTTP cache too, it is
+ * marked so that it is downloaded again bypassing HTTP cache, see {@link #isInvalidated(String)}.
+ *
+ * This class is thread safe.
+ */
+public class LinkCache {
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Set<String> invalidated = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  LinkCache() {
+  }
+
+  /**
+   * Returns cached document stored under specified key or null if there is no such entry or it
+   * has already expired.
+   */
+  <T extends Pojo> T get(String key, Class<T> type) {
+    Entry entry = entries.get(key);
+    if (entry == null || entry.isExpired(System.currentTimeMillis()) || !type.isInstance(entry.value)) {
+      if (entry != null) {
+        entries.remove(key, entry);
+      }
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return type.cast(entry.value);
+  }
+
+  /**
+   * Checks whether there is a valid entry for specified key. Does not update hit/miss counters.
+   */
+  boolean contains(String key) {
+    Entry entry = entries.get(key);
+    return entry != null && !entry.isExpired(System.currentTimeMillis());
+  }
+
+  void put(String key, Pojo value, long ttlMillis) {
+    if (value == null) {
+      return;
+    }
+    entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis));
+    invalidated.remove(key);
+  }
+
+  void invalidate(String key) {
+    entries.remove(key);
+    invalidated.add(key);
+  }
+
+  /**
+   * @return true when entry was invalidated as stale and has not been stored again since
+   */
+  boolean isInvalidated(String key) {
+    return invalidated.contains(key);
+  }
+
+  void invalidateAll() {
+    entries.clear();
+  }
+
+  /**
+   * @return number of lookups served from memory since this cache was created
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * @return number of lookups that had to go to Device Server since this cache was created
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  private static class Entry {
+    final Pojo value;
+    final long expiryTime;
+
+    Entry(Pojo value, long expiryTime) {
+      this.value = value;
+      this.expiryTime = expiryTime;
+    }
+
+    boolean isExpired(long now) {
+      return now >= expiryTime;
+    }
+  }
+}
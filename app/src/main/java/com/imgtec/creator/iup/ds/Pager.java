@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.imgtec.creator.iup.ds.exceptions.DeviceServerException;
+import com.imgtec.creator.iup.ds.exceptions.UnknownException;
+import com.imgtec.creator.iup.ds.pojo.Link;
+import com.imgtec.creator.iup.ds.pojo.PageInfo;
+import com.imgtec.creator.iup.ds.pojo.Paged;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Lazily iterates over items of paged Device Server collection. Pages are requested one at a time,
+ * following "next" link or {@link PageInfo} of previous page. Next page is requested as soon as
+ * previous one arrives, so it is downloaded while items of the current page are consumed.
+ * Page size is adapted to measured response time: fast pages grow, slow pages shrink.
+ *
+ * Pages can be consumed asynchronously with {@link #nextPage()} or item by item with blocking
+ * {@link Iterator} methods, which must not be called from UI thread. Only one consumer is supported.
+ * Iteration can be terminated at any time with {@link #close()}, cancelling future returned by
+ * {@link #nextPage()} closes the pager as well. Errors are thrown from {@link #hasNext()} as
+ * {@link DeviceServerException}.
+ */
+public class Pager<T> implements Iterator<T> {
+
+  /**
+   * Downloads single page of collection.
+   */
+  interface Source<T> {
+    /**
+     * @param href link to page or null when page should be addressed by start index
+     */
+    ListenableFuture<? extends Paged<T>> load(String href, int startIndex, int pageSize);
+  }
+
+  static final int MIN_PAGE_SIZE = 20;
+  static final int MAX_PAGE_SIZE = 500;
+  /**
+   * Page download time the page size is tuned for.
+   */
+  static final long TARGET_PAGE_TIME = 500;
+
+  private final Source<T> source;
+  private int pageSize;
+  private ListenableFuture<TimedPage<T>> pending;
+  private Iterator<T> current = Collections.<T>emptyList().iterator();
+  private int pageCount;
+  private boolean closed;
+
+  Pager(Source<T> source, int initialPageSize) {
+    this.source = source;
+    this.pageSize = Math.max(MIN_PAGE_SIZE, Math.min(MAX_PAGE_SIZE, initialPageSize));
+    pending = request(null, 0);
+  }
+
+  /**
+   * Returns items of next page. Following page is requested as soon as this one arrives. Should be
+   * called only after future returned by previous call completes. Cancelling returned future closes
+   * the pager, so following page is not prefetched.
+   * @return future of page items or of null when there are no more pages
+   */
+  public synchronized ListenableFuture<List<T>> nextPage() {
+    if (pending == null) {
+      return Futures.immediateFuture(null);
+    }
+    ListenableFuture<TimedPage<T>> page = pending;
+    pending = null;
+    ListenableFuture<List<T>> items = Futures.transform(page, new Function<TimedPage<T>, List<T>>() {
+      @Override
+      public List<T> apply(TimedPage<T> page) {
+        return onPage(page);
+      }
+    });
+    closeWhenDone(items, true);
+    return items;
+  }
+
+  /**
+   * Closes this pager when consumer of its pages completes, e.g. asynchronous search that stops at first
+   * match or is cancelled between two pages. Page prefetched for the consumer is cancelled.
+   */
+  public void closeWhenDone(ListenableFuture<?> consumer) {
+    closeWhenDone(consumer, false);
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      List<T> items = await(nextPage());
+      if (items == null) {
+        return false;
+      }
+      current = items.iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Stops iteration and cancels page being prefetched.
+   */
+  public synchronized void close() {
+    closed = true;
+    if (pending != null) {
+      pending.cancel(true);
+      pending = null;
+    }
+    current = Collections.<T>emptyList().iterator();
+  }
+
+  /**
+   * @return number of pages consumed so far
+   */
+  public synchronized int getPageCount() {
+    return pageCount;
+  }
+
+  /**
+   * @return size of next requested page
+   */
+  public synchronized int getPageSize() {
+    return pageSize;
+  }
+
+  private void closeWhenDone(final ListenableFuture<?> future, final boolean onlyCancelled) {
+    future.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (!onlyCancelled || future.isCancelled()) {
+          close();
+        }
+      }
+    }, MoreExecutors.directExecutor());
+  }
+
+  private synchronized List<T> onPage(TimedPage<T> page) {
+    pageCount++;
+    adaptPageSize(page.time);
+    requestNext(page.page);
+    List<T> items = page.page.getItems();
+    return items != null ? items : Collections.<T>emptyList();
+  }
+
+  private void requestNext(Paged<T> page) {
+    if (closed) {
+      return;
+    }
+    String href = nextHref(page);
+    PageInfo pageInfo = page.getPageInfo();
+    if (href != null) {
+      pending = request(withPageSize(href, pageSize), 0);
+    } else if (pageInfo != null && pageInfo.getStartIndex() != null && pageInfo.getItemsCount() != null
+        && pageInfo.getTotalCount() != null && pageInfo.getItemsCount() > 0
+        && pageInfo.getStartIndex() + pageInfo.getItemsCount() < pageInfo.getTotalCount()) {
+      pending = request(null, pageInfo.getStartIndex() + pageInfo.getItemsCount());
+    }
+  }
+
+  private ListenableFuture<TimedPage<T>> request(String href, int startIndex) {
+    final long start = System.currentTimeMillis();
+    ListenableFuture<? extends Paged<T>> future;
+    try {
+      future = source.load(href, startIndex, pageSize);
+    } catch (RuntimeException e) {
+      future = Futures.immediateFailedFuture(e);
+    }
+    return Futures.transform(future, new Function<Paged<T>, TimedPage<T>>() {
+      @Override
+      public TimedPage<T> apply(Paged<T> page) {
+        return new TimedPage<>(page, System.currentTimeMillis() - start);
+      }
+    });
+  }
+
+  private void adaptPageSize(long time) {
+    if (time < TARGET_PAGE_TIME / 2) {
+      pageSize = Math.min(MAX_PAGE_SIZE, pageSize * 2);
+    } else if (time > TARGET_PAGE_TIME) {
+      pageSize = Math.max(MIN_PAGE_SIZE, pageSize / 2);
+    }
+  }
+
+  private static String nextHref(Paged<?> page) {
+    Link link = page.getPageInfo() != null ? page.getPageInfo().getLinkByRel("next") : null;
+    if (link == null) {
+      link = page.getLinkByRel("next");
+    }
+    return link != null ? link.getHref() : null;
+  }
+
+  private static String withPageSize(String href, int pageSize) {
+    HttpUrl url = HttpUrl.parse(href);
+    if (url == null) {
+      return href;
+    }
+    return url.newBuilder().setQueryParameter("pageSize", Integer.toString(pageSize)).build().toString();
+  }
+
+  private static <T> T await(ListenableFuture<T> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof DeviceServerException) {
+        throw (DeviceServerException) e.getCause();
+      }
+      throw new UnknownException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UnknownException(e);
+    }
+  }
+
+  private static class TimedPage<T> {
+    final Paged<T> page;
+    final long time;
+
+    TimedPage(Paged<T> page, long time) {
+      this.page = page;
+      this.time = time;
+    }
+  }
+}
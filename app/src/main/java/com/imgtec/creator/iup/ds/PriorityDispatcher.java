@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Decides order in which Device Server calls are started. Every call belongs to one of
+ * {@link RequestClass}es, each class has its own queue and concurrency budget. When a slot frees up,
+ * call of the most important class goes next, so user actions do not wait behind polling. One slot
+ * is reserved for {@link RequestClass#INTERACTIVE} calls. To avoid starvation, queued call is promoted
+ * by one class for every {@link #agingStep} milliseconds it has waited.
+ *
+ * Time spent in queue is recorded per class, see {@link #getStats(RequestClass)}.
+ *
+ * This class is thread safe.
+ */
+public class PriorityDispatcher {
+
+  /**
+   * Classes of requests, from the most important one.
+   */
+  public enum RequestClass {
+    /**
+     * Writes initiated by user, e.g. switching LED.
+     */
+    INTERACTIVE,
+    /**
+     * Reads the user is waiting for.
+     */
+    FOREGROUND,
+    /**
+     * Periodic polling.
+     */
+    BACKGROUND,
+    /**
+     * Speculative reads, e.g. next page of collection.
+     */
+    PREFETCH
+  }
+
+  /**
+   * Handle of submitted call.
+   */
+  public interface Job {
+    /**
+     * Removes call from queue if it has not started yet.
+     * @return true if call was removed and will never start
+     */
+    boolean cancel();
+  }
+
+  private final int maxRequests;
+  private final long agingStep;
+  private final Map<RequestClass, Integer> budgets = new EnumMap<>(RequestClass.class);
+  private final Map<RequestClass, Queue<QueuedJob>> queues = new EnumMap<>(RequestClass.class);
+  private final Map<RequestClass, Integer> running = new EnumMap<>(RequestClass.class);
+  private final Map<RequestClass, QueueStats> stats = new EnumMap<>(RequestClass.class);
+  private int runningTotal;
+
+  /**
+   * @param maxRequests maximum number of calls running at the same time
+   * @param agingStep time in milliseconds after which queued call is promoted by one class
+   */
+  PriorityDispatcher(int maxRequests, long agingStep) {
+    this.maxRequests = maxRequests;
+    this.agingStep = agingStep;
+    for (RequestClass requestClass : RequestClass.values()) {
+      budgets.put(requestClass, maxRequests);
+      queues.put(requestClass, new ArrayDeque<QueuedJob>());
+      running.put(requestClass, 0);
+      stats.put(requestClass, new QueueStats());
+    }
+  }
+
+  /**
+   * Limits number of calls of specified class running at the same time.
+   */
+  void setBudget(RequestClass requestClass, int budget) {
+    synchronized (this) {
+      budgets.put(requestClass, Math.max(1, Math.min(maxRequests, budget)));
+    }
+    startReady();
+  }
+
+  /**
+   * Queues call. Call is started by running specified runnable, possibly on calling thread. Every
+   * started call must be followed by {@link #finished(RequestClass)} once it completes.
+   */
+  Job submit(RequestClass requestClass, Runnable call) {
+    QueuedJob job = new QueuedJob(requestClass, call, System.currentTimeMillis());
+    synchronized (this) {
+      queues.get(requestClass).add(job);
+    }
+    startReady();
+    return job;
+  }
+
+  /**
+   * Releases slot taken by call of specified class.
+   */
+  void finished(RequestClass requestClass) {
+    synchronized (this) {
+      running.put(requestClass, running.get(requestClass) - 1);
+      runningTotal--;
+    }
+    startReady();
+  }
+
+  /**
+   * @return snapshot of queue-wait statistics of specified class
+   */
+  public synchronized QueueStats getStats(RequestClass requestClass) {
+    return new QueueStats(stats.get(requestClass));
+  }
+
+  /**
+   * @return number of calls of specified class waiting for a slot
+   */
+  public synchronized int getQueuedCount(RequestClass requestClass) {
+    return queues.get(requestClass).size();
+  }
+
+  /**
+   * @return number of started calls of specified class that have not finished yet
+   */
+  public synchronized int getRunningCount(RequestClass requestClass) {
+    return running.get(requestClass);
+  }
+
+  private void startReady() {
+    QueuedJob job;
+    while ((job = promote()) != null) {
+      job.call.run();
+    }
+  }
+
+  /**
+   * Takes the most important call that can be started now and reserves slot for it.
+   * @return call to start or null if none
+   */
+  private synchronized QueuedJob promote() {
+    if (runningTotal >= maxRequests) {
+      return null;
+    }
+    long now = System.currentTimeMillis();
+    QueuedJob best = null;
+    long bestRank = 0;
+    for (RequestClass requestClass : RequestClass.values()) {
+      QueuedJob head = queues.get(requestClass).peek();
+      if (head == null || !canStart(requestClass)) {
+        continue;
+      }
+      long rank = requestClass.ordinal() - (now - head.queuedAt) / agingStep;
+      if (best == null || rank < bestRank || (rank == bestRank && head.queuedAt < best.queuedAt)) {
+        best = head;
+        bestRank = rank;
+      }
+    }
+    if (best == null) {
+      return null;
+    }
+    queues.get(best.requestClass).remove();
+    running.put(best.requestClass, running.get(best.requestClass) + 1);
+    runningTotal++;
+    best.started = true;
+    stats.get(best.requestClass).record(now - best.queuedAt);
+    return best;
+  }
+
+  private boolean canStart(RequestClass requestClass) {
+    if (running.get(requestClass) >= budgets.get(requestClass)) {
+      return false;
+    }
+    return requestClass == RequestClass.INTERACTIVE || runningTotal < maxRequests - 1;
+  }
+
+  private synchronized boolean remove(QueuedJob job) {
+    return !job.started && queues.get(job.requestClass).remove(job);
+  }
+
+  private class QueuedJob implements Job {
+    final RequestClass requestClass;
+    final Runnable call;
+    final long queuedAt;
+    boolean started;
+
+    QueuedJob(RequestClass requestClass, Runnable call, long queuedAt) {
+      this.requestClass = requestClass;
+      this.call = call;
+      this.queuedAt = queuedAt;
+    }
+
+    @Override
+    public boolean cancel() {
+      return remove(this);
+    }
+  }
+
+  /**
+   * Time calls of one class spent waiting in queue.
+   */
+  public static class QueueStats {
+    private long count;
+    private long totalWait;
+    private long maxWait;
+
+    QueueStats() {
+    }
+
+    QueueStats(QueueStats other) {
+      count = other.count;
+      totalWait = other.totalWait;
+      maxWait = other.maxWait;
+    }
+
+    void record(long wait) {
+      count++;
+      totalWait += wait;
+      maxWait = Math.max(maxWait, wait);
+    }
+
+    /**
+     * @return number of calls started
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * @return average time in milliseconds between submitting and starting call
+     */
+    public long getAverageWait() {
+      return count > 0 ? totalWait / count : 0;
+    }
+
+    /**
+     * @return the longest time in milliseconds call waited in queue
+     */
+    public long getMaxWait() {
+      return maxWait;
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.imgtec.creator.iup.ds.exceptions.DeviceServerException;
+import com.imgtec.creator.iup.ds.exceptions.UnknownException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets concurrent identical requests share single call, either blocking or asynchronous. First caller executes the request, callers
+ * that come with the same key while it is in flight wait for its result instead of issuing their own
+ * request. Results are not kept after the call completes. Asynchronous callers are counted, shared call
+ * is cancelled when all of them have cancelled their futures.
+ *
+ * This class is thread safe.
+ */
+public class RequestCoalescer {
+
+  /**
+   * Asynchronous call that can be shared.
+   */
+  interface AsyncCall<T> {
+    ListenableFuture<T> start();
+  }
+
+  private final ConcurrentMap<String, SettableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, SharedCall> inFlightAsync = new ConcurrentHashMap<>();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong absorbed = new AtomicLong();
+
+  RequestCoalescer() {
+  }
+
+  /**
+   * Executes call or joins call already in flight under the same key. Blocks until result is ready.
+   * @throws DeviceServerException thrown by call
+   */
+  @SuppressWarnings("unchecked")
+  <T> T execute(String key, Callable<T> call) {
+    requests.incrementAndGet();
+    SharedCall async = inFlightAsync.get(key);
+    if (async != null && async.join()) {
+      absorbed.incrementAndGet();
+      return (T) await(async.newWaiter());
+    }
+    SettableFuture<Object> future = SettableFuture.create();
+    SettableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      absorbed.incrementAndGet();
+      return (T) await(existing);
+    }
+    try {
+      T result = call.call();
+      future.set(result);
+      return result;
+    } catch (DeviceServerException e) {
+      future.setException(e);
+      throw e;
+    } catch (Exception e) {
+      UnknownException unknown = new UnknownException(e);
+      future.setException(unknown);
+      throw unknown;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  /**
+   * Starts call or joins call already in flight under the same key. Cancelling returned future cancels the
+   * shared call only when it was the last caller waiting for it, so one caller cannot cancel call other
+   * callers wait for.
+   */
+  @SuppressWarnings("unchecked")
+  <T> ListenableFuture<T> executeAsync(final String key, AsyncCall<T> call) {
+    requests.incrementAndGet();
+    while (true) {
+      final SharedCall shared = new SharedCall();
+      SharedCall existing = inFlightAsync.putIfAbsent(key, shared);
+      if (existing != null) {
+        if (existing.join()) {
+          absorbed.incrementAndGet();
+          return (ListenableFuture<T>) existing.newWaiter();
+        }
+        // existing call has completed or every caller of it has cancelled, it is being removed
+        inFlightAsync.remove(key, existing);
+        continue;
+      }
+      // removed before waiters complete, so they can not join the completed call again
+      shared.result.addListener(new Runnable() {
+        @Override
+        public void run() {
+          inFlightAsync.remove(key, shared);
+        }
+      }, MoreExecutors.directExecutor());
+      shared.join();
+      ListenableFuture<Object> waiter = shared.newWaiter();
+      try {
+        shared.result.setFuture((ListenableFuture<Object>) call.start());
+      } catch (RuntimeException e) {
+        shared.result.setException(e);
+      }
+      return (ListenableFuture<T>) waiter;
+    }
+  }
+
+  /**
+   * @return number of requests passed to this coalescer
+   */
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  /**
+   * @return number of requests that joined a call already in flight
+   */
+  public long getAbsorbedCount() {
+    return absorbed.get();
+  }
+
+  /**
+   * Asynchronous call shared by callers, counts callers whose futures were not cancelled.
+   */
+  private static class SharedCall {
+    final SettableFuture<Object> result = SettableFuture.create();
+    private int waiters;
+    private boolean abandoned;
+
+    /**
+     * @return false when the call has completed or all callers have cancelled it
+     */
+    synchronized boolean join() {
+      if (abandoned || result.isDone()) {
+        return false;
+      }
+      waiters++;
+      return true;
+    }
+
+    ListenableFuture<Object> newWaiter() {
+      final ListenableFuture<Object> waiter = Futures.nonCancellationPropagating(result);
+      waiter.addListener(new Runnable() {
+        @Override
+        public void run() {
+          if (waiter.isCancelled()) {
+            leave();
+          }
+        }
+      }, MoreExecutors.directExecutor());
+      return waiter;
+    }
+
+    private void leave() {
+      synchronized (this) {
+        if (--waiters > 0 || result.isDone()) {
+          return;
+        }
+        abandoned = true;
+      }
+      result.cancel(true);
+    }
+  }
+
+  private static Object await(Future<Object> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof DeviceServerException) {
+        throw (DeviceServerException) e.getCause();
+      }
+      throw new UnknownException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UnknownException(e);
+    }
+  }
+}
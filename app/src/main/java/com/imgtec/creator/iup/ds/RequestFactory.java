@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import java.util.Map;
+
+import okhttp3.FormBody;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+/**
+ * Builds Device Server requests. Kept free of Android dependencies, so it can be benchmarked on plain JVM.
+ */
+final class RequestFactory {
+
+  private RequestFactory() {
+  }
+
+  /**
+   * @param queryParams appended to url, values must be already encoded
+   * @param params form parameters, values must be already encoded
+   * @param rawData JSON body, used when there are no form parameters
+   * @param needAuthorization stored as request tag, tells DSService to add token
+   */
+  static Request buildRequest(String url, Map<String, String> queryParams, String method, Map<String, String> headers,
+                              Map<String, String> params, String rawData, boolean needAuthorization) {
+    Request.Builder builder = new Request.Builder();
+    if (queryParams != null) {
+      url += "?";
+      for (Map.Entry<String, String> entry : queryParams.entrySet()) {
+        url += entry.getKey() + "=" + entry.getValue() + "&";
+      }
+    }
+    builder.url(url);
+    if (headers != null) {
+      builder.headers(Headers.of(headers));
+    }
+    if (params != null) {
+      FormBody.Builder bodyBuilder = new FormBody.Builder();
+      for (Map.Entry<String, String> entry : params.entrySet()) {
+        bodyBuilder.addEncoded(entry.getKey(), entry.getValue());
+      }
+      builder.method(method, bodyBuilder.build());
+    } else if (rawData != null) {
+      builder.method(method, RequestBody.create(MediaType.parse("application/json"), rawData));
+    } else {
+      builder.method(method, null);
+    }
+    builder.tag(needAuthorization);
+
+    return builder.build();
+
+  }
+}
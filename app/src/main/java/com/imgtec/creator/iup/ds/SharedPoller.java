@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.imgtec.creator.iup.ds.exceptions.DeviceServerException;
+import com.imgtec.creator.iup.ds.exceptions.UnknownException;
+import com.imgtec.creator.iup.utils.PollingScheduler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Polls single resource on behalf of all its observers. Changed values are published to every
+ * observer, the last value is replayed to observers that subscribe later. Every poll gets fingerprint
+ * of the previous response, so unchanged responses are recognized without parsing and comparing them.
+ */
+abstract class SharedPoller<T> implements PollingScheduler.Task {
+
+  private final List<Observer<T>> observers = new CopyOnWriteArrayList<>();
+  private PollingScheduler.Stream stream;
+  private volatile Fingerprinted<T> last;
+
+  /**
+   * Downloads current value of polled resource.
+   * @param previous result of the last successful poll, null on the first poll
+   */
+  abstract ListenableFuture<Fingerprinted<T>> fetch(Fingerprinted<T> previous);
+
+  /**
+   * Compares values whose bodies differ, e.g. only in formatting or order of fields.
+   */
+  abstract boolean isChanged(T previous, T current);
+
+  void start(PollingScheduler scheduler, String name, PollingScheduler.Policy policy) {
+    stream = scheduler.start(name, policy, this);
+  }
+
+  void stop() {
+    stream.stop();
+  }
+
+  T getLastValue() {
+    Fingerprinted<T> last = this.last;
+    return last != null ? last.getValue() : null;
+  }
+
+  void addObserver(Observer<T> observer) {
+    observers.add(observer);
+  }
+
+  /**
+   * @return true if there are no more observers left
+   */
+  boolean removeObserver(Observer<T> observer) {
+    observers.remove(observer);
+    return observers.isEmpty();
+  }
+
+  @Override
+  public ListenableFuture<Boolean> poll() {
+    ListenableFuture<Fingerprinted<T>> future = fetch(last);
+    Futures.addCallback(future, new FutureCallback<Fingerprinted<T>>() {
+      @Override
+      public void onSuccess(Fingerprinted<T> result) {
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        DeviceServerException e = t instanceof DeviceServerException ? (DeviceServerException) t : new UnknownException(t);
+        for (Observer<T> observer : observers) {
+          observer.onError(e);
+        }
+      }
+    }, MoreExecutors.directExecutor());
+
+    return Futures.transform(future, new Function<Fingerprinted<T>, Boolean>() {
+      @Override
+      public Boolean apply(Fingerprinted<T> result) {
+        Fingerprinted<T> previous = last;
+        if (result.isUnchanged()) {
+          return false;
+        }
+        // keep fingerprint of the latest body even when its value equals the previous one
+        last = result;
+        boolean changed = previous == null || isChanged(previous.getValue(), result.getValue());
+        if (changed) {
+          for (Observer<T> observer : observers) {
+            observer.onNext(result.getValue());
+          }
+        }
+        return changed;
+      }
+    });
+  }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.imgtec.creator.iup.ds.exceptions.DeviceServerException;
+import com.imgtec.creator.iup.ds.exceptions.UnauthorizedException;
+import com.imgtec.creator.iup.ds.exceptions.UnknownException;
+import com.imgtec.creator.iup.ds.pojo.OauthToken;
+import com.imgtec.creator.iup.utils.SessionStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns OAuth token used to authorize Device Server requests. Token is kept in memory and refreshed:
+ * <ul>
+ *   <li>proactively, by a timer that fires shortly before token expires, so requests do not have to wait,</li>
+ *   <li>on demand, when token has already expired or server rejected it.</li>
+ * </ul>
+ * Concurrent refresh requests are coalesced, so there is at most one refresh call in flight. Refresh
+ * belongs to the session it was started in, its result is dropped when the session was cleared or
+ * replaced by login in the meantime.
+ *
+ * Timer is started only once token is set or refreshed, not for token stored by previous run: app
+ * logs in again with its refresh token on start and refresh tokens are single use.
+ */
+class TokenManager {
+
+  /**
+   * Token is considered expired this long before its real expiry time.
+   */
+  private static final long EXPIRY_MARGIN = 10 * 1000;
+
+  /**
+   * Proactive refresh is scheduled this long before token expires.
+   */
+  private static final long REFRESH_AHEAD = 60 * 1000;
+
+  private static final long RETRY_DELAY = 30 * 1000;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TokenManager.class);
+
+  /**
+   * Performs actual refresh call to Device Server.
+   */
+  interface Refresher {
+    OauthToken refresh(String refreshToken);
+  }
+
+  private final SessionStore sessionStore;
+  private final Refresher refresher;
+  private final ScheduledExecutorService scheduler;
+  private final Executor executor;
+
+  private final Object lock = new Object();
+  private SettableFuture<String> inFlight;
+  private ScheduledFuture<?> scheduledRefresh;
+  /**
+   * Incremented whenever session is cleared or replaced, guarded by lock.
+   */
+  private long generation;
+
+  private volatile long lastRefreshTime;
+
+  /**
+   * @param scheduler fires proactive refresh timer, it is shared, so refresh itself runs on executor
+   */
+  TokenManager(SessionStore sessionStore, Refresher refresher, ScheduledExecutorService scheduler, Executor executor) {
+    this.sessionStore = sessionStore;
+    this.refresher = refresher;
+    this.scheduler = scheduler;
+    this.executor = executor;
+  }
+
+  String getRefreshToken() {
+    return sessionStore.getSession().getRefreshToken();
+  }
+
+  /**
+   * Returns access token that can be attached to request. Blocks only when current token has
+   * already expired and has to be refreshed.
+   */
+  String getAccessToken() {
+    SessionStore.Session session = sessionStore.getSession();
+    if (isExpired(session)) {
+      return refresh(Long.MIN_VALUE);
+    }
+    return session.getAccessToken();
+  }
+
+  /**
+   * Called when server rejected request sent at specified time. Refreshes token unless it has already been
+   * refreshed after the request was sent.
+   * @return access token to retry request with
+   */
+  String onUnauthorized(long sentRequestAtMillis) {
+    if (lastRefreshTime > sentRequestAtMillis) {
+      return sessionStore.getSession().getAccessToken();
+    }
+    return refresh(sentRequestAtMillis);
+  }
+
+  /**
+   * Stores token obtained by logging in and schedules its proactive refresh. Refresh in flight started
+   * in previous session does not overwrite it.
+   */
+  void setToken(OauthToken token) {
+    synchronized (lock) {
+      generation++;
+      inFlight = null;
+      storeToken(token);
+    }
+    scheduleRefresh();
+  }
+
+  /**
+   * @return number identifying current session, it changes whenever session is cleared or replaced
+   */
+  long getSessionGeneration() {
+    synchronized (lock) {
+      return generation;
+    }
+  }
+
+  void clear() {
+    synchronized (lock) {
+      generation++;
+      inFlight = null;
+      if (scheduledRefresh != null) {
+        scheduledRefresh.cancel(false);
+        scheduledRefresh = null;
+      }
+      sessionStore.clearToken();
+    }
+  }
+
+  /**
+   * Refreshes token or joins refresh that is already in progress. Caller that wins the refresh checks
+   * again whether token has been refreshed since it decided to refresh, so late caller does not rotate
+   * refresh token that has just been rotated.
+   * @param rejectedAt time the caller's token was rejected at, token refreshed later is reused;
+   *                   {@link Long#MIN_VALUE} reuses any token that has not expired
+   * @return new access token
+   */
+  private String refresh(long rejectedAt) {
+    SettableFuture<String> future;
+    boolean owner = false;
+    long startGeneration;
+    synchronized (lock) {
+      if (inFlight == null) {
+        inFlight = SettableFuture.create();
+        owner = true;
+      }
+      future = inFlight;
+      startGeneration = generation;
+    }
+    if (owner) {
+      try {
+        SessionStore.Session session = sessionStore.getSession();
+        if (lastRefreshTime > rejectedAt && !isExpired(session)) {
+          future.set(session.getAccessToken());
+        } else {
+          future.set(storeRefreshed(startGeneration, refresher.refresh(session.getRefreshToken())));
+        }
+      } catch (RuntimeException e) {
+        future.setException(e);
+      } finally {
+        synchronized (lock) {
+          if (inFlight == future) {
+            inFlight = null;
+          }
+        }
+      }
+    }
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UnknownException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof DeviceServerException) {
+        throw (DeviceServerException) e.getCause();
+      }
+      throw new UnknownException(e.getCause());
+    }
+  }
+
+  /**
+   * Stores refreshed token unless session has been cleared or replaced since the refresh started.
+   * @return access token of current session
+   */
+  private String storeRefreshed(long startGeneration, OauthToken token) {
+    synchronized (lock) {
+      if (generation != startGeneration) {
+        LOGGER.debug("Session changed during token refresh, refreshed token dropped");
+        SessionStore.Session session = sessionStore.getSession();
+        if (session.getRefreshToken().isEmpty()) {
+          throw new UnauthorizedException();
+        }
+        return session.getAccessToken();
+      }
+      storeToken(token);
+    }
+    scheduleRefresh();
+    return token.getAccessToken();
+  }
+
+  private void storeToken(OauthToken token) {
+    sessionStore.setToken(token.getAccessToken(), System.currentTimeMillis() + 1000 * token.getExpiresIn(),
+        token.getRefreshToken());
+    lastRefreshTime = System.currentTimeMillis();
+  }
+
+  private static boolean isExpired(SessionStore.Session session) {
+    return session.getAccessTokenExpiryTime() - EXPIRY_MARGIN <= System.currentTimeMillis();
+  }
+
+  private void scheduleRefresh() {
+    SessionStore.Session session = sessionStore.getSession();
+    if (session.getRefreshToken() == null || session.getRefreshToken().isEmpty()) {
+      return;
+    }
+    long delay = Math.max(0, session.getAccessTokenExpiryTime() - REFRESH_AHEAD - System.currentTimeMillis());
+    schedule(delay);
+  }
+
+  private void proactiveRefresh() {
+    try {
+      // token is refreshed ahead of expiry, unless it was refreshed since the timer fired
+      refresh(System.currentTimeMillis());
+    } catch (UnauthorizedException e) {
+      LOGGER.warn("Refresh token rejected, proactive refresh stopped");
+    } catch (DeviceServerException e) {
+      LOGGER.warn("Proactive token refresh failed, retrying in {} ms", RETRY_DELAY);
+      schedule(RETRY_DELAY);
+    }
+  }
+
+  private void schedule(long delay) {
+    synchronized (lock) {
+      if (scheduledRefresh != null) {
+        scheduledRefresh.cancel(false);
+      }
+      scheduledRefresh = scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          executor.execute(new Runnable() {
+            @Override
+            public void run() {
+              proactiveRefresh();
+            }
+          });
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+}
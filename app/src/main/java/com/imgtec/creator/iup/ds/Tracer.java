@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records hierarchical spans of Device Server operations: public operation, its HTTP hops, token
+ * refreshes and response parsing. Finished spans are kept in fixed-size ring buffer, the oldest ones are
+ * overwritten. Spans can be exported in Chrome trace format (chrome://tracing, Perfetto).
+ *
+ * Current span is tracked per thread. Asynchronous code has to pass it explicitly: capture
+ * {@link #current()} before handing work to another thread and restore it with {@link #setCurrent(Span)}
+ * around continuations.
+ *
+ * This class is thread safe.
+ */
+public class Tracer {
+
+  private final Span[] buffer;
+  private final AtomicLong ids = new AtomicLong();
+  private final ThreadLocal<Span> current = new ThreadLocal<>();
+  private final long epochNanos = System.nanoTime();
+  private int next;
+  private long recorded;
+
+  /**
+   * @param capacity maximum number of kept finished spans
+   */
+  Tracer(int capacity) {
+    buffer = new Span[capacity];
+  }
+
+  /**
+   * Starts span which is child of current span of calling thread, or root span if there is none.
+   * Span does not become current.
+   */
+  Span startSpan(String name) {
+    return startSpan(name, current.get());
+  }
+
+  Span startSpan(String name, Span parent) {
+    return new Span(ids.incrementAndGet(), parent, name);
+  }
+
+  /**
+   * @return current span of calling thread or null
+   */
+  Span current() {
+    return current.get();
+  }
+
+  /**
+   * Makes span current for calling thread.
+   * @return previously current span, should be restored when done
+   */
+  Span setCurrent(Span span) {
+    Span previous = current.get();
+    if (span != null) {
+      current.set(span);
+    } else {
+      current.remove();
+    }
+    return previous;
+  }
+
+  /**
+   * @return finished spans kept in buffer, from the oldest one
+   */
+  public synchronized List<Span> getSpans() {
+    List<Span> spans = new ArrayList<>(buffer.length);
+    int size = (int) Math.min(recorded, buffer.length);
+    int start = recorded > buffer.length ? next : 0;
+    for (int i = 0; i < size; ++i) {
+      spans.add(buffer[(start + i) % buffer.length]);
+    }
+    return spans;
+  }
+
+  /**
+   * @return number of spans finished since the tracer was created, including overwritten ones
+   */
+  public synchronized long getRecordedCount() {
+    return recorded;
+  }
+
+  public synchronized void clear() {
+    for (int i = 0; i < buffer.length; ++i) {
+      buffer[i] = null;
+    }
+    next = 0;
+    recorded = 0;
+  }
+
+  /**
+   * Exports kept spans as complete ("X") events of Chrome trace format. Every root span and its
+   * descendants share one track, so operations are laid out as separate rows.
+   */
+  public JsonObject toChromeTrace() {
+    JsonArray events = new JsonArray();
+    for (Span span : getSpans()) {
+      JsonObject event = new JsonObject();
+      event.addProperty("name", span.name);
+      event.addProperty("cat", span.parentId == 0 ? "operation" : "hop");
+      event.addProperty("ph", "X");
+      event.addProperty("ts", (span.startNanos - epochNanos) / 1000);
+      event.addProperty("dur", (span.endNanos - span.startNanos) / 1000);
+      event.addProperty("pid", 1);
+      event.addProperty("tid", span.rootId);
+      JsonObject args = new JsonObject();
+      args.addProperty("id", span.id);
+      args.addProperty("parent", span.parentId);
+      args.addProperty("thread", span.thread);
+      for (Map.Entry<String, String> entry : span.getTags().entrySet()) {
+        args.addProperty(entry.getKey(), entry.getValue());
+      }
+      event.add("args", args);
+      events.add(event);
+    }
+    JsonObject trace = new JsonObject();
+    trace.add("traceEvents", events);
+    trace.addProperty("displayTimeUnit", "ms");
+    return trace;
+  }
+
+  private synchronized void record(Span span) {
+    buffer[next] = span;
+    next = (next + 1) % buffer.length;
+    recorded++;
+  }
+
+  /**
+   * Timed operation. Span is recorded when {@link #end()} is called for the first time.
+   */
+  public class Span {
+    private final long id;
+    private final long parentId;
+    private final long rootId;
+    private final String name;
+    private final String thread;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private long endNanos;
+
+    Span(long id, Span parent, String name) {
+      this.id = id;
+      this.parentId = parent != null ? parent.id : 0;
+      this.rootId = parent != null ? parent.rootId : id;
+      this.name = name;
+      this.thread = Thread.currentThread().getName();
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getId() {
+      return id;
+    }
+
+    /**
+     * @return id of parent span or 0 for root span
+     */
+    public long getParentId() {
+      return parentId;
+    }
+
+    /**
+     * @return duration in nanoseconds, 0 if span has not ended
+     */
+    public synchronized long getDuration() {
+      return endNanos != 0 ? endNanos - startNanos : 0;
+    }
+
+    public synchronized Map<String, String> getTags() {
+      return new LinkedHashMap<>(tags);
+    }
+
+    synchronized Span tag(String key, Object value) {
+      tags.put(key, String.valueOf(value));
+      return this;
+    }
+
+    void end() {
+      synchronized (this) {
+        if (endNanos != 0) {
+          return;
+        }
+        endNanos = System.nanoTime();
+      }
+      record(this);
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.base.Objects;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.imgtec.creator.iup.ds.exceptions.DeviceServerException;
+import com.imgtec.creator.iup.ds.exceptions.UnknownException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Coalesces writes of desired state per key. At most one write per key is in flight, values
+ * requested meanwhile replace each other and only the last one is written when the previous
+ * write completes. Writes of different keys are independent.
+ */
+public class WriteCoalescer<K, V> {
+
+  public interface Writer<K, V> {
+    ListenableFuture<?> write(K key, V value);
+  }
+
+  public interface Listener<K, V> {
+    /**
+     * Called when desired value of key was written and no further write is pending.
+     */
+    void onCommitted(K key, V value);
+
+    /**
+     * Called when write failed. Pending value is dropped, {@code confirmed} is the last value
+     * known to be stored on the remote side.
+     */
+    void onFailed(K key, V confirmed, DeviceServerException e);
+  }
+
+  private static class Entry<V> {
+    V confirmed;
+    V desired;
+    V writing;
+    boolean inFlight;
+
+    Entry(V confirmed) {
+      this.confirmed = confirmed;
+    }
+  }
+
+  private final Writer<K, V> writer;
+  private final Listener<K, V> listener;
+  private final Map<K, Entry<V>> entries = new HashMap<>();
+
+  public WriteCoalescer(Writer<K, V> writer, Listener<K, V> listener) {
+    this.writer = writer;
+    this.listener = listener;
+  }
+
+  /**
+   * Requests {@code desired} value to be written under {@code key}.
+   * @param current value currently stored on the remote side, used for rollback when there is no
+   *                pending write for the key
+   */
+  public void submit(K key, V desired, V current) {
+    V value;
+    synchronized (this) {
+      Entry<V> entry = entries.get(key);
+      if (entry == null) {
+        entry = new Entry<>(current);
+        entries.put(key, entry);
+      }
+      entry.desired = desired;
+      if (entry.inFlight) {
+        return;
+      }
+      entry.inFlight = true;
+      entry.writing = desired;
+      value = desired;
+    }
+    write(key, value);
+  }
+
+  /**
+   * @return true if there is a write in flight or waiting for key
+   */
+  public synchronized boolean isPending(K key) {
+    return entries.containsKey(key);
+  }
+
+  /**
+   * Drops values waiting to be written. Writes already in flight are neither cancelled nor forgotten,
+   * so value submitted later is written only after them and {@link #isPending(Object)} reports them.
+   */
+  public synchronized void clear() {
+    for (Entry<V> entry : entries.values()) {
+      entry.desired = entry.writing;
+    }
+  }
+
+  private void write(final K key, final V value) {
+    ListenableFuture<?> future;
+    try {
+      future = writer.write(key, value);
+    } catch (RuntimeException e) {
+      future = Futures.immediateFailedFuture(e);
+    }
+    Futures.addCallback(future, new FutureCallback<Object>() {
+      @Override
+      public void onSuccess(Object result) {
+        V next = null;
+        synchronized (WriteCoalescer.this) {
+          Entry<V> entry = entries.get(key);
+          if (entry == null) {
+            return;
+          }
+          entry.confirmed = value;
+          if (Objects.equal(entry.desired, value)) {
+            entries.remove(key);
+          } else {
+            next = entry.desired;
+            entry.writing = next;
+          }
+        }
+        if (next != null) {
+          write(key, next);
+        } else {
+          listener.onCommitted(key, value);
+        }
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        Entry<V> entry;
+        synchronized (WriteCoalescer.this) {
+          entry = entries.remove(key);
+        }
+        if (entry != null) {
+          listener.onFailed(key, entry.confirmed,
+              t instanceof DeviceServerException ? (DeviceServerException) t : new UnknownException(t));
+        }
+      }
+    }, MoreExecutors.directExecutor());
+  }
+}
@@ -35,6 +35,8 @@ package com.imgtec.creator.iup.ds.pojo;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
+import java.util.List;
+
 public class Client extends Pojo {
 
   @SerializedName("Name")
@@ -49,4 +51,12 @@ public class Client extends Pojo {
     this.name = name;
   }
 
+  public List<Link> getLinks() {
+    return links;
+  }
+
+  public void setLinks(List<Link> links) {
+    this.links = links;
+  }
+
 }
@@ -37,7 +37,7 @@ import com.google.gson.annotations.SerializedName;
 import java.util.ArrayList;
 import java.util.List;
 
-public class Clients extends Pojo {
+public class Clients extends Pojo implements Paged<Client> {
 
   @SerializedName("PageInfo")
   @Expose
@@ -46,6 +46,7 @@ public class Clients extends Pojo {
   @Expose
   private List<Client> items = new ArrayList<>();
 
+  @Override
   public PageInfo getPageInfo() {
     return pageInfo;
   }
@@ -54,6 +55,7 @@ public class Clients extends Pojo {
     this.pageInfo = pageInfo;
   }
 
+  @Override
   public List<Client> getItems() {
     return items;
   }
@@ -61,4 +63,12 @@ public class Clients extends Pojo {
   public void setItems(List<Client> items) {
     this.items = items;
   }
+
+  public List<Link> getLinks() {
+    return links;
+  }
+
+  public void setLinks(List<Link> links) {
+    this.links = links;
+  }
 }
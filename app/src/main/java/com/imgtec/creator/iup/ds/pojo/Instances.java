@@ -37,7 +37,7 @@ import com.google.gson.annotations.SerializedName;
 import java.util.ArrayList;
 import java.util.List;
 
-public class Instances<T extends Pojo> extends Pojo {
+public class Instances<T extends Pojo> extends Pojo implements Paged<T> {
 
   @SerializedName("PageInfo")
   @Expose
@@ -46,6 +46,7 @@ public class Instances<T extends Pojo> extends Pojo {
   @Expose
   private List<T> items = new ArrayList<>();
 
+  @Override
   public PageInfo getPageInfo() {
     return pageInfo;
   }
@@ -54,6 +55,7 @@ public class Instances<T extends Pojo> extends Pojo {
     this.pageInfo = pageInfo;
   }
 
+  @Override
   public List<T> getItems() {
     return items;
   }
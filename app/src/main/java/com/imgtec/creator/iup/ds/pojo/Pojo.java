@@ -33,28 +33,96 @@ package com.imgtec.creator.iup.ds.pojo;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 public class Pojo {
 
   @SerializedName("Links")
   @Expose
-  List<Link> links = new ArrayList<>();
-  private Map<String, Link> linksMap = new HashMap<>();
+  List<Link> links = Collections.emptyList();
+  /** Built on first lookup, transient keeps it out of request bodies serialized with Gson. */
+  private transient volatile LinkIndex linkIndex;
 
+  /**
+   * Returns link with specified relation, null if there is no such link. Index of links is built on
+   * first call and rebuilt only when links are replaced, lookups are thread safe and do not allocate.
+   */
   public Link getLinkByRel(String rel) {
-    if (links.isEmpty()) {
-      return null;
+    LinkIndex index = linkIndex;
+    if (index == null || index.source != links) {
+      // racing threads may build the index twice, both copies are equal and immutable
+      index = new LinkIndex(links);
+      linkIndex = index;
     }
-    if (!links.isEmpty() && linksMap.isEmpty()) {
-      for (Link link : links) {
-        linksMap.put(link.getRel(), link);
+    return index.get(rel);
+  }
+
+  /**
+   * Immutable map of links keyed by interned relation, kept in two parallel arrays. Pojos carry a handful
+   * of links, so linear scan comparing references first is cheaper than hashing and takes less memory
+   * than a HashMap.
+   */
+  private static final class LinkIndex {
+
+    private static final String[] NO_RELS = new String[0];
+    private static final Link[] NO_LINKS = new Link[0];
+
+    final List<Link> source;
+    private final String[] rels;
+    private final Link[] links;
+
+    LinkIndex(List<Link> source) {
+      this.source = source;
+      int size = source != null ? source.size() : 0;
+      if (size == 0) {
+        rels = NO_RELS;
+        links = NO_LINKS;
+        return;
+      }
+      String[] rels = new String[size];
+      Link[] links = new Link[size];
+      int count = 0;
+      for (Link link : source) {
+        if (link == null || link.getRel() == null) {
+          continue;
+        }
+        String rel = link.getRel().intern();
+        int index = indexOf(rels, count, rel);
+        if (index >= 0) {
+          // last link with the same relation wins
+          links[index] = link;
+        } else {
+          rels[count] = rel;
+          links[count] = link;
+          count++;
+        }
       }
+      this.rels = count == size ? rels : Arrays.copyOf(rels, count);
+      this.links = count == size ? links : Arrays.copyOf(links, count);
     }
-    return linksMap.get(rel);
-  }
 
+    Link get(String rel) {
+      int index = indexOf(rels, rels.length, rel);
+      return index >= 0 ? links[index] : null;
+    }
+
+    private static int indexOf(String[] rels, int count, String rel) {
+      for (int i = 0; i < count; ++i) {
+        if (rels[i] == rel) {
+          return i;
+        }
+      }
+      if (rel == null) {
+        return -1;
+      }
+      for (int i = 0; i < count; ++i) {
+        if (rels[i].equals(rel)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
 }
@@ -37,14 +37,26 @@ import android.support.v4.app.Fragment;
 
 import com.imgtec.creator.iup.App;
 import com.imgtec.creator.iup.di.component.AppComponent;
+import com.imgtec.creator.iup.utils.RequestScope;
 
 public abstract class DIFragment extends Fragment {
 
+  /**
+   * Scope of requests made while fragment is resumed, cancelled when fragment is paused.
+   */
+  protected final RequestScope requestScope = new RequestScope();
+
   @Override
   public void onCreate(@Nullable Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setupComponent(App.get().getAppComponent());
   }
 
+  @Override
+  public void onPause() {
+    requestScope.cancelAll();
+    super.onPause();
+  }
+
   abstract protected void setupComponent(AppComponent appComponent);
 }
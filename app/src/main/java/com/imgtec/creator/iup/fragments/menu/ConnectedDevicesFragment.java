@@ -45,8 +45,8 @@ import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.RelativeLayout;
 
+import com.google.common.base.Predicate;
 import com.google.common.util.concurrent.FutureCallback;
-import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.imgtec.creator.iup.R;
 import com.imgtec.creator.iup.activities.CreatorActivity;
@@ -54,10 +54,10 @@ import com.imgtec.creator.iup.adapters.ConnectedDevicesAdapter;
 import com.imgtec.creator.iup.di.component.AppComponent;
 import com.imgtec.creator.iup.ds.DSService;
 import com.imgtec.creator.iup.ds.pojo.Client;
-import com.imgtec.creator.iup.ds.pojo.Clients;
 import com.imgtec.creator.iup.fragments.common.FragmentWithTitle;
 import com.imgtec.creator.iup.fragments.menu.setupguide.SetUpWifireDeviceFragment;
 import com.imgtec.creator.iup.wifire.DeviceHelper;
+import com.imgtec.creator.iup.wifire.DeviceSnapshots;
 import com.imgtec.creator.iup.wifire.WifireDevice;
 import com.imgtec.creator.iup.fragments.navigationdrawer.NDMenuItem;
 import com.imgtec.creator.iup.utils.NDMenuMode;
@@ -89,6 +89,7 @@ public class ConnectedDevicesFragment extends FragmentWithTitle implements
   @Inject Preferences preferences;
   @Inject DSService DSService;
   @Inject DeviceHelper deviceHelper;
+  @Inject DeviceSnapshots deviceSnapshots;
 
   @BindView(R.id.deviceListView) ListView deviceListView;
   @BindView(R.id.devicesLayout) LinearLayout devicesLayout;
@@ -151,43 +152,66 @@ public class ConnectedDevicesFragment extends FragmentWithTitle implements
   }
 
 
+  /**
+   * Shows last known devices as soon as snapshot is read in background, spinner is displayed until
+   * there is a snapshot or live list. List is replaced once live list is downloaded.
+   */
   private void initDeviceList() {
-    progressBar.setVisibility(View.VISIBLE);
+    if (devices != null) {
+      // view may have been recreated, e.g. when returning from back stack
+      afterGetDevices();
+    } else {
+      progressBar.setVisibility(View.VISIBLE);
+      requestScope.addCallback(deviceSnapshots.loadDevices(), new FutureCallback<List<Client>>() {
+        @Override
+        public void onSuccess(List<Client> snapshot) {
+          if (devices != null || snapshot.isEmpty()) {
+            return;
+          }
+          setDevices(snapshot);
+          afterGetDevices();
+          progressBar.setVisibility(View.GONE);
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          // live list is downloaded anyway
+        }
+      });
+    }
     getDevices();
   }
 
+  private void setDevices(List<Client> clients) {
+    devices = new ArrayList<>();
+    for (Client client : clients) {
+      devices.add(new WifireDevice(client));
+    }
+  }
+
   private void getDevices() {
 
-    ListenableFuture<Clients> future = DSService.getClients(0, 100);
-    Futures.addCallback(future, new FutureCallback<Clients>() {
+    ListenableFuture<List<Client>> future = DSService.findClientsByName(new Predicate<String>() {
       @Override
-      public void onSuccess(final Clients clients) {
-        getActivity().runOnUiThread(new Runnable() {
-          @Override
-          public void run() {
-            devices = new ArrayList<>();
-            for (Client client : clients.getItems()) {
-              if (client.getName().startsWith("WiFire")) {
-                devices.add(new WifireDevice(client));
-              }
-            }
-
-            afterGetDevices();
-            progressBar.setVisibility(View.GONE);
-            swipeLayout.setRefreshing(false);
-          }
-        });
+      public boolean apply(String name) {
+        return name != null && name.startsWith("WiFire");
+      }
+    }, Integer.MAX_VALUE);
+    requestScope.addCallback(future, new FutureCallback<List<Client>>() {
+      @Override
+      public void onSuccess(List<Client> clients) {
+        deviceSnapshots.putDevices(clients);
+        setDevices(clients);
+
+        afterGetDevices();
+        progressBar.setVisibility(View.GONE);
+        swipeLayout.setRefreshing(false);
       }
 
       @Override
       public void onFailure(Throwable t) {
-        getActivity().runOnUiThread(new Runnable() {
-          @Override
-          public void run() {
-            progressBar.setVisibility(View.GONE);
-            swipeLayout.setRefreshing(false);
-          }
-        });
+        progressBar.setVisibility(View.GONE);
+        swipeLayout.setRefreshing(false);
       }
     });
   }
@@ -227,7 +251,9 @@ public class ConnectedDevicesFragment extends FragmentWithTitle implements
       }
 
       private void setInteractiveMode() {
-        deviceHelper.setDevice(devices.get(deviceListView.getCheckedItemPosition()));
+        WifireDevice device = devices.get(deviceListView.getCheckedItemPosition());
+        deviceHelper.setDevice(device);
+        deviceSnapshots.putSelectedDevice(device.getName());
         ((CreatorActivity) menuListener).setUIMode(NDMenuMode.Interactive);
       }
     });
@@ -255,8 +281,19 @@ public class ConnectedDevicesFragment extends FragmentWithTitle implements
   }
 
 
+  /**
+   * Selects previously selected device if it is still on the list, first device otherwise.
+   */
   private void resetSelectionToFirstDevice() {
-    deviceListView.setItemChecked(0, true);
+    int position = 0;
+    String selected = deviceSnapshots.getSelectedDevice();
+    for (int i = 0; selected != null && i < devices.size(); i++) {
+      if (selected.equals(devices.get(i).getName())) {
+        position = i;
+        break;
+      }
+    }
+    deviceListView.setItemChecked(position, true);
     selectDevice();
   }
 
@@ -40,7 +40,6 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import com.google.common.util.concurrent.FutureCallback;
-import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.gson.reflect.TypeToken;
 import com.imgtec.creator.iup.R;
@@ -100,8 +99,8 @@ public class CreatorDeviceInfoFragment extends FragmentWithTitle {
   }
 
   @Override
-  public void onViewCreated(View view, Bundle savedInstanceState) {
-    super.onViewCreated(view, savedInstanceState);
+  public void onResume() {
+    super.onResume();
     getDeviceInfo();
   }
 
@@ -119,7 +118,7 @@ public class CreatorDeviceInfoFragment extends FragmentWithTitle {
   private void getDeviceInfo() {
     ListenableFuture<Instances<DeviceInfo>> future = caller.getInstances(deviceHelper.getDevice().getClient(), 3, new TypeToken<Instances<DeviceInfo>>() {
     });
-    Futures.addCallback(future, new FutureCallback<Instances<DeviceInfo>>() {
+    requestScope.addCallback(future, new FutureCallback<Instances<DeviceInfo>>() {
       @Override
       public void onSuccess(Instances<DeviceInfo> result) {
         if (result.getItems().size() == 1) {
@@ -134,21 +133,16 @@ public class CreatorDeviceInfoFragment extends FragmentWithTitle {
     });
   }
 
-  private void updateDeviceInfo(final DeviceInfo device) {
-    getActivity().runOnUiThread(new Runnable() {
-      @Override
-      public void run() {
-        if (device != null) {
-          serialNumberValue.setText(device.getSerialNumber());
-          deviceTypeValue.setText(device.getDeviceType());
-          softwareVersionValue.setText(device.getSoftwareVersion());
-          macValue.setText(R.string.na);
-          nameValue.setText(R.string.na);
+  private void updateDeviceInfo(DeviceInfo device) {
+    if (device != null) {
+      serialNumberValue.setText(device.getSerialNumber());
+      deviceTypeValue.setText(device.getDeviceType());
+      softwareVersionValue.setText(device.getSoftwareVersion());
+      macValue.setText(R.string.na);
+      nameValue.setText(R.string.na);
 
-        }
-        progressBar.setVisibility(View.GONE);
-      }
-    });
+    }
+    progressBar.setVisibility(View.GONE);
   }
 
 
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.fragments.menu;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.support.v4.content.FileProvider;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.imgtec.creator.iup.App;
+import com.imgtec.creator.iup.R;
+import com.imgtec.creator.iup.di.component.AppComponent;
+import com.imgtec.creator.iup.ds.ClientIndex;
+import com.imgtec.creator.iup.ds.DSService;
+import com.imgtec.creator.iup.ds.HttpCacheStats;
+import com.imgtec.creator.iup.ds.LinkCache;
+import com.imgtec.creator.iup.ds.PollStats;
+import com.imgtec.creator.iup.ds.PriorityDispatcher;
+import com.imgtec.creator.iup.ds.RequestCoalescer;
+import com.imgtec.creator.iup.fragments.common.FragmentWithTitle;
+import com.imgtec.creator.iup.utils.LoadMetrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+import butterknife.OnClick;
+import butterknife.Unbinder;
+
+/**
+ * Hidden screen showing live network metrics of Device Server and SoftAP clients. Reachable by long
+ * click on "About" item of navigation drawer. Report can be exported as JSON, recorded spans of Device
+ * Server operations in Chrome trace format. Trace can be large, so it is shared as a file through
+ * {@link FileProvider} rather than as intent extra, which is limited by size of binder transaction.
+ */
+public class DiagnosticsFragment extends FragmentWithTitle {
+
+  public static final String TAG = "DiagnosticsFragment";
+
+  private static final long REFRESH_INTERVAL = 1000;
+  /**
+   * Directory in app cache exposed by {@link FileProvider}, see res/xml/file_paths.xml.
+   */
+  private static final String EXPORT_DIR = "diagnostics";
+  private static final String TRACE_FILE = "trace.json";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DiagnosticsFragment.class);
+
+  @BindView(R.id.report) TextView report;
+
+  @Inject DSService dsService;
+  @Inject
+  @Named("Interactive")
+  LoadMetrics interactiveLoadMetrics;
+  @Inject
+  @Named("UI")
+  Handler handler;
+  @Inject
+  @Named("Background")
+  ListeningExecutorService backgroundExecutor;
+
+  private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+  private Unbinder unbinder;
+
+  private final Runnable refreshTask = new Runnable() {
+    @Override
+    public void run() {
+      report.setText(gson.toJson(createReport()));
+      handler.postDelayed(this, REFRESH_INTERVAL);
+    }
+  };
+
+  public static DiagnosticsFragment newInstance() {
+    return new DiagnosticsFragment();
+  }
+
+  @Override
+  public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+    View rootView = inflater.inflate(R.layout.frag_diagnostics, container, false);
+    unbinder = ButterKnife.bind(this, rootView);
+    return rootView;
+  }
+
+  @Override
+  public void onResume() {
+    super.onResume();
+    handler.post(refreshTask);
+  }
+
+  @Override
+  public void onPause() {
+    handler.removeCallbacks(refreshTask);
+    super.onPause();
+  }
+
+  @Override
+  public void onDestroyView() {
+    unbinder.unbind();
+    super.onDestroyView();
+  }
+
+  @OnClick(R.id.exportButton)
+  void onExportClicked() {
+    Intent intent = new Intent(Intent.ACTION_SEND);
+    intent.setType("application/json");
+    intent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.diagnostics));
+    intent.putExtra(Intent.EXTRA_TEXT, gson.toJson(createReport()));
+    startActivity(Intent.createChooser(intent, getString(R.string.diagnostics_export)));
+  }
+
+  @OnClick(R.id.exportTraceButton)
+  void onExportTraceClicked() {
+    final JsonObject trace = dsService.getTracer().toChromeTrace();
+    final File file = new File(new File(getActivity().getCacheDir(), EXPORT_DIR), TRACE_FILE);
+    requestScope.addCallback(backgroundExecutor.submit(new Callable<File>() {
+      @Override
+      public File call() throws IOException {
+        writeJson(trace, file);
+        return file;
+      }
+    }), new FutureCallback<File>() {
+      @Override
+      public void onSuccess(File file) {
+        Uri uri = FileProvider.getUriForFile(getActivity(), getActivity().getPackageName() + ".fileprovider", file);
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("application/json");
+        intent.putExtra(Intent.EXTRA_SUBJECT, TRACE_FILE);
+        intent.putExtra(Intent.EXTRA_STREAM, uri);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(intent, getString(R.string.diagnostics_export_trace)));
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        LOGGER.warn("Trace could not be exported", t);
+        Toast.makeText(getActivity(), R.string.diagnostics_export_failed, Toast.LENGTH_SHORT).show();
+      }
+    });
+  }
+
+  private static void writeJson(JsonObject json, File file) throws IOException {
+    File dir = file.getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Could not create " + dir);
+    }
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8);
+    try {
+      new Gson().toJson(json, writer);
+    } finally {
+      writer.close();
+    }
+  }
+
+  private JsonObject createReport() {
+    JsonObject json = new JsonObject();
+    json.addProperty("timestamp", System.currentTimeMillis());
+    json.add("deviceServer", dsService.getNetworkMetrics().toJson());
+    json.add("softAP", ((App) getActivity().getApplication()).getSoftAPMetrics().toJson());
+
+    PriorityDispatcher dispatcher = dsService.getPriorityDispatcher();
+    JsonObject priorityQueues = new JsonObject();
+    for (PriorityDispatcher.RequestClass requestClass : PriorityDispatcher.RequestClass.values()) {
+      PriorityDispatcher.QueueStats stats = dispatcher.getStats(requestClass);
+      JsonObject queue = new JsonObject();
+      queue.addProperty("queued", dispatcher.getQueuedCount(requestClass));
+      queue.addProperty("started", stats.getCount());
+      queue.addProperty("averageWait", stats.getAverageWait());
+      queue.addProperty("maxWait", stats.getMaxWait());
+      priorityQueues.add(requestClass.name().toLowerCase(Locale.US), queue);
+    }
+    json.add("priorityQueues", priorityQueues);
+
+    HttpCacheStats cacheStats = dsService.getHttpCacheStats();
+    JsonObject cache = new JsonObject();
+    cache.addProperty("hits", cacheStats.getHitCount());
+    cache.addProperty("revalidations", cacheStats.getRevalidationCount());
+    cache.addProperty("misses", cacheStats.getMissCount());
+    cache.addProperty("savedBytes", cacheStats.getSavedBytes());
+    json.add("httpCache", cache);
+
+    LinkCache linkCache = dsService.getLinkCache();
+    JsonObject links = new JsonObject();
+    links.addProperty("hits", linkCache.getHitCount());
+    links.addProperty("misses", linkCache.getMissCount());
+    json.add("linkCache", links);
+
+    ClientIndex clientIndex = dsService.getClientIndex();
+    JsonObject clients = new JsonObject();
+    clients.addProperty("hits", clientIndex.getHitCount());
+    clients.addProperty("misses", clientIndex.getMissCount());
+    json.add("clientIndex", clients);
+
+    RequestCoalescer coalescer = dsService.getRequestCoalescer();
+    JsonObject coalescing = new JsonObject();
+    coalescing.addProperty("requests", coalescer.getRequestCount());
+    coalescing.addProperty("absorbed", coalescer.getAbsorbedCount());
+    json.add("coalescer", coalescing);
+
+    PollStats pollStats = dsService.getPollStats();
+    JsonObject polls = new JsonObject();
+    polls.addProperty("unchanged", pollStats.getUnchangedCount());
+    polls.addProperty("changed", pollStats.getChangedCount());
+    json.add("polls", polls);
+
+    JsonObject screens = new JsonObject();
+    screens.add(interactiveLoadMetrics.getName(), interactiveLoadMetrics.toJson());
+    json.add("screens", screens);
+
+    JsonObject trace = new JsonObject();
+    trace.addProperty("recordedSpans", dsService.getTracer().getRecordedCount());
+    json.add("trace", trace);
+    return json;
+  }
+
+  @Override
+  protected String getActionBarTitleText() {
+    return getString(R.string.diagnostics);
+  }
+
+  @Override
+  protected void setupComponent(AppComponent appComponent) {
+    appComponent.inject(this);
+  }
+}
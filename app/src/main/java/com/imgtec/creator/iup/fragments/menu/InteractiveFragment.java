@@ -35,9 +35,11 @@ import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.os.Bundle;
 import android.os.Handler;
-import android.support.annotation.NonNull;
+import android.support.annotation.DrawableRes;
 import android.support.annotation.Nullable;
 import android.support.annotation.UiThread;
+import android.support.v4.os.TraceCompat;
+import android.support.v4.view.ViewCompat;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -45,6 +47,10 @@ import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.gson.reflect.TypeToken;
 import com.imgtec.creator.iup.R;
 import com.imgtec.creator.iup.activities.ActivitiesAndFragmentsHelper;
@@ -52,30 +58,38 @@ import com.imgtec.creator.iup.activities.BaseActivity;
 import com.imgtec.creator.iup.activities.CreatorActivity;
 import com.imgtec.creator.iup.di.component.AppComponent;
 import com.imgtec.creator.iup.ds.DSService;
+import com.imgtec.creator.iup.ds.Observer;
+import com.imgtec.creator.iup.ds.Subscription;
+import com.imgtec.creator.iup.ds.WriteCoalescer;
 import com.imgtec.creator.iup.ds.exceptions.DeviceServerException;
 import com.imgtec.creator.iup.ds.exceptions.NetworkException;
 import com.imgtec.creator.iup.ds.exceptions.NotFoundException;
 import com.imgtec.creator.iup.ds.exceptions.ParseException;
 import com.imgtec.creator.iup.ds.exceptions.UnauthorizedException;
+import com.imgtec.creator.iup.ds.exceptions.UnknownException;
 import com.imgtec.creator.iup.ds.pojo.AnalogInput;
 import com.imgtec.creator.iup.ds.pojo.Client;
+import com.imgtec.creator.iup.ds.pojo.EmptyResponse;
 import com.imgtec.creator.iup.ds.pojo.IPSODigitalInput;
 import com.imgtec.creator.iup.ds.pojo.Instances;
 import com.imgtec.creator.iup.ds.pojo.LightControl;
 import com.imgtec.creator.iup.ds.pojo.Temperature;
 import com.imgtec.creator.iup.wifire.DeviceHelper;
+import com.imgtec.creator.iup.wifire.DeviceSnapshots;
 import com.imgtec.creator.iup.fragments.common.FragmentWithProgressBar;
+import com.imgtec.creator.iup.utils.FixedPointText;
+import com.imgtec.creator.iup.utils.LoadMetrics;
+import com.imgtec.creator.iup.utils.PollingScheduler;
 import com.imgtec.creator.iup.utils.SimpleFragmentFactory;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import butterknife.BindView;
+import butterknife.BindViews;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
 import butterknife.Unbinder;
@@ -85,19 +99,78 @@ public class InteractiveFragment extends FragmentWithProgressBar {
   public static final String TAG = "InteractiveFragment";
 
   private static final int LIGHT_CONTROL_OBJECT_ID = 3311;
+  private static final int DIGITAL_INPUT_OBJECT_ID = 3200;
+  private static final int TEMPERATURE_OBJECT_ID = 3303;
+  private static final int ANALOG_INPUT_OBJECT_ID = 3202;
+
+  private static final TypeToken<LightControl> LIGHT_CONTROL_TYPE = new TypeToken<LightControl>() {
+  };
+  private static final TypeToken<Instances<LightControl>> LIGHT_CONTROLS_TYPE = new TypeToken<Instances<LightControl>>() {
+  };
+  private static final TypeToken<Instances<IPSODigitalInput>> DIGITAL_INPUTS_TYPE = new TypeToken<Instances<IPSODigitalInput>>() {
+  };
+  private static final TypeToken<Instances<Temperature>> TEMPERATURES_TYPE = new TypeToken<Instances<Temperature>>() {
+  };
+  private static final TypeToken<Instances<AnalogInput>> ANALOG_INPUTS_TYPE = new TypeToken<Instances<AnalogInput>>() {
+  };
+
+  /**
+   * Delay before next attempt to start observing device after failure.
+   */
+  private static final long RETRY_DELAY = 2000;
+
+  /**
+   * Parts of the screen loaded independently, one per observed object.
+   */
+  private static final int TILE_LEDS = 1;
+  private static final int TILE_BUTTONS = 1 << 1;
+  private static final int TILE_TEMPERATURE = 1 << 2;
+  private static final int TILE_ANALOG_INPUT = 1 << 3;
+  private static final int ALL_TILES = TILE_LEDS | TILE_BUTTONS | TILE_TEMPERATURE | TILE_ANALOG_INPUT;
+
+  /**
+   * Opacity of tiles showing values that are not live, e.g. restored from snapshot or last seen before error.
+   */
+  private static final float STALE_ALPHA = 0.4f;
 
   private boolean[] ledStates = new boolean[4];
+  /**
+   * Led states last reported by device or confirmed by write, null until live state is known. Shown
+   * states may come from snapshot or be pending writes, so writes are rolled back to these.
+   */
+  private Boolean[] liveLedStates = new Boolean[4];
   private boolean[] buttonStates = new boolean[2];
   private float[] temperatureValues = new float[1];
   private float[] analogInputValues = new float[1];
 
-
-  @BindView(R.id.led1) ImageView led1;
-  @BindView(R.id.led2) ImageView led2;
-  @BindView(R.id.led3) ImageView led3;
-  @BindView(R.id.led4) ImageView led4;
-  @BindView(R.id.sw1) ImageView sw1;
-  @BindView(R.id.sw2) ImageView sw2;
+  private final List<Subscription> subscriptions = new ArrayList<>();
+  private boolean deviceOfflineDialogShown;
+
+  /**
+   * Bit masks of led and button states shown by views, -1 when views show no state yet.
+   */
+  private int renderedLeds = -1;
+  private int renderedButtons = -1;
+  /**
+   * Tiles without live value, bit mask of TILE_ constants.
+   */
+  private int staleTiles = ALL_TILES;
+  private int renderedStaleTiles = -1;
+  /**
+   * Tiles whose last poll failed, bit mask of TILE_ constants.
+   */
+  private int failedTiles;
+  /**
+   * Start of current load in nanoseconds, 0 when all tiles got live values or screen is paused.
+   */
+  private long loadStart;
+  private FixedPointText temperatureText;
+  private FixedPointText analogInputText;
+  private boolean renderScheduled;
+
+
+  @BindViews({R.id.led1, R.id.led2, R.id.led3, R.id.led4}) ImageView[] leds;
+  @BindViews({R.id.sw1, R.id.sw2}) ImageView[] switches;
 
   @BindView(R.id.prog) ProgressBar progressBar;
   @BindView(R.id.tempValue) TextView tempValue;
@@ -108,10 +181,61 @@ public class InteractiveFragment extends FragmentWithProgressBar {
   Handler handler;
   @Inject DSService caller;
   @Inject DeviceHelper deviceHelper;
+  @Inject PollingScheduler pollingScheduler;
+  @Inject DeviceSnapshots deviceSnapshots;
+  @Inject
+  @Named("Interactive")
+  LoadMetrics loadMetrics;
 
   Unbinder unbinder;
 
-  ExecutorService executor = Executors.newSingleThreadExecutor();
+  private volatile Client client;
+
+  /**
+   * Writes desired led states, repeated clicks of the same led are coalesced into single update.
+   */
+  private final WriteCoalescer<Integer, Boolean> ledWriter = new WriteCoalescer<>(
+      new WriteCoalescer.Writer<Integer, Boolean>() {
+        @Override
+        public ListenableFuture<?> write(final Integer instanceId, Boolean on) {
+          final LightControl lightControl = new LightControl();
+          lightControl.setOnOff(on);
+          Client current = client;
+          ListenableFuture<Client> clientFuture = current != null ? Futures.immediateFuture(current)
+              : caller.getClient(deviceHelper.getDevice().getName());
+          return Futures.transformAsync(clientFuture, new AsyncFunction<Client, EmptyResponse>() {
+            @Override
+            public ListenableFuture<EmptyResponse> apply(Client client) {
+              return caller.updateInstance(client, LIGHT_CONTROL_OBJECT_ID, instanceId, lightControl, LIGHT_CONTROL_TYPE);
+            }
+          });
+        }
+      },
+      new WriteCoalescer.Listener<Integer, Boolean>() {
+        @Override
+        public void onCommitted(final Integer instanceId, final Boolean on) {
+          handler.post(new Runnable() {
+            @Override
+            public void run() {
+              liveLedStates[instanceId] = on;
+              updateProgress();
+            }
+          });
+        }
+
+        @Override
+        public void onFailed(final Integer instanceId, final Boolean confirmed, DeviceServerException e) {
+          handler.post(new Runnable() {
+            @Override
+            public void run() {
+              liveLedStates[instanceId] = confirmed;
+              ledStates[instanceId] = confirmed;
+              updateUI();
+            }
+          });
+          handleSetLedFailure(e);
+        }
+      });
 
 
   public static InteractiveFragment newInstance() {
@@ -128,20 +252,36 @@ public class InteractiveFragment extends FragmentWithProgressBar {
   public View onCreateView(LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
     View rootView = inflater.inflate(R.layout.frag_interactive, container, false);
     unbinder = ButterKnife.bind(this, rootView);
+    renderedLeds = -1;
+    renderedButtons = -1;
+    renderedStaleTiles = -1;
+    temperatureText = new FixedPointText(getString(R.string.celsius_value), 2);
+    analogInputText = new FixedPointText(getString(R.string.volt_value), 2);
     return rootView;
   }
 
   @Override
   public void onResume() {
     super.onResume();
-    handler.post(refreshTask);
+    deviceOfflineDialogShown = false;
+    staleTiles = ALL_TILES;
+    failedTiles = 0;
+    loadStart = System.nanoTime();
+    restoreSnapshot();
+    pollingScheduler.setNetworkAvailable(wifiUtil.isInternetNotBoardConnected());
+    startObserving();
   }
 
   @Override
   public void onPause() {
     super.onPause();
-    hideProgressDialog();
-    handler.removeCallbacks(refreshTask);
+    ledWriter.clear();
+    updateProgress();
+    stopObserving();
+    if (loadStart != 0) {
+      loadStart = 0;
+      loadMetrics.recordIncomplete();
+    }
   }
 
   @Override
@@ -151,119 +291,204 @@ public class InteractiveFragment extends FragmentWithProgressBar {
 
   @Override
   public void onDestroyView() {
+    tempValue.removeCallbacks(renderTask);
+    renderScheduled = false;
     unbinder.unbind();
     super.onDestroyView();
   }
 
+  @Override
+  protected void onNetworkStateChanged() {
+    pollingScheduler.setNetworkAvailable(wifiUtil.isInternetNotBoardConnected());
+  }
+
   @Override
   protected String getActionBarTitleText() {
     return deviceHelper.getDevice().getClient().getName();
   }
 
 
-  private void refresh() {
-    executor.submit(new Runnable() {
+  /**
+   * Resolves client of selected device and subscribes to all objects displayed by this fragment.
+   * Polling itself is done by {@link DSService#observe(Client, int, TypeToken)}, so it is shared with other
+   * observers of the same objects.
+   */
+  private void startObserving() {
+    requestScope.addCallback(caller.getClient(deviceHelper.getDevice().getName()), new FutureCallback<Client>() {
       @Override
-      public void run() {
-        try {
-          Client client = caller.getClient(deviceHelper.getDevice().getName()).get();
-          final Instances<LightControl> lightControls = caller.getInstances(client, LIGHT_CONTROL_OBJECT_ID, new TypeToken<Instances<LightControl>>() {
-          }).get();
-          final Instances<IPSODigitalInput> digitalInputs = caller.getInstances(client, 3200, new TypeToken<Instances<IPSODigitalInput>>() {
-          }).get();
-          final Instances<Temperature> temperatures = caller.getInstances(client, 3303, new TypeToken<Instances<Temperature>>() {
-          }).get();
-          final Instances<AnalogInput> analogInputs = caller.getInstances(client, 3202, new TypeToken<Instances<AnalogInput>>() {
-          }).get();
-          if (lightControls.getItems().size() < 4)
-            throw new ParseException();
-          if (digitalInputs.getItems().size() < 2) {
-            throw new ParseException();
-          }
-          if (temperatures.getItems().size() < 1) {
-            throw new ParseException();
-          }
-          if (analogInputs.getItems().size() < 1) {
-            throw new ParseException();
-          }
-          handler.post(new Runnable() {
-            @Override
-            public void run() {
-              handleRefreshSuccess(lightControls, digitalInputs, temperatures, analogInputs);
-            }
-          });
+      public void onSuccess(Client client) {
+        if (subscriptions.isEmpty()) {
+          subscribe(client);
+        }
+      }
 
-        } catch (InterruptedException e) {
-          e.printStackTrace();
-        } catch (final ExecutionException e) {
-          handler.post(new Runnable() {
-            @Override
-            public void run() {
-              handleRefreshFailure((DeviceServerException) e.getCause());
-            }
-          });
-        } catch (final ParseException e) {
-          handler.post(new Runnable() {
-            @Override
-            public void run() {
-              handleRefreshFailure(e);
-            }
-          });
+      @Override
+      public void onFailure(Throwable t) {
+        handleRefreshFailure(t instanceof DeviceServerException ? (DeviceServerException) t : new UnknownException(t));
+        if (!(t instanceof NotFoundException)) {
+          handler.postDelayed(startObservingTask, RETRY_DELAY);
         }
-        handler.postDelayed(refreshTask, 2000);
       }
     });
+  }
 
+  @UiThread
+  private void subscribe(Client client) {
+    this.client = client;
+    subscriptions.add(caller.observe(client, LIGHT_CONTROL_OBJECT_ID, LIGHT_CONTROLS_TYPE)
+        .subscribe(new UiObserver<Instances<LightControl>>(TILE_LEDS) {
+          @Override
+          boolean onValue(Instances<LightControl> leds) {
+            List<LightControl> items = leds.getItems();
+            if (items.size() < ledStates.length) {
+              return false;
+            }
+            for (int i = 0; i < ledStates.length; i++) {
+              liveLedStates[i] = items.get(i).isOnOff();
+              if (!ledWriter.isPending(i)) {
+                ledStates[i] = items.get(i).isOnOff();
+              }
+            }
+            return true;
+          }
+        }));
+    subscriptions.add(caller.observe(client, DIGITAL_INPUT_OBJECT_ID, DIGITAL_INPUTS_TYPE)
+        .subscribe(new UiObserver<Instances<IPSODigitalInput>>(TILE_BUTTONS) {
+          @Override
+          boolean onValue(Instances<IPSODigitalInput> buttons) {
+            List<IPSODigitalInput> items = buttons.getItems();
+            if (items.size() < buttonStates.length) {
+              return false;
+            }
+            for (int i = 0; i < buttonStates.length; i++) {
+              buttonStates[i] = items.get(i).getState();
+            }
+            return true;
+          }
+        }));
+    subscriptions.add(caller.observe(client, TEMPERATURE_OBJECT_ID, TEMPERATURES_TYPE)
+        .subscribe(new UiObserver<Instances<Temperature>>(TILE_TEMPERATURE) {
+          @Override
+          boolean onValue(Instances<Temperature> temperatures) {
+            if (temperatures.getItems().size() < 1) {
+              return false;
+            }
+            temperatureValues[0] = temperatures.getItems().get(0).getSensorValue();
+            return true;
+          }
+        }));
+    subscriptions.add(caller.observe(client, ANALOG_INPUT_OBJECT_ID, ANALOG_INPUTS_TYPE)
+        .subscribe(new UiObserver<Instances<AnalogInput>>(TILE_ANALOG_INPUT) {
+          @Override
+          boolean onValue(Instances<AnalogInput> analogInputs) {
+            if (analogInputs.getItems().size() < 1) {
+              return false;
+            }
+            analogInputValues[0] = analogInputs.getItems().get(0).getCurrentValue();
+            return true;
+          }
+        }));
   }
 
-  @Override
-  protected void setupComponent(AppComponent appComponent) {
-    appComponent.inject(this);
+  /**
+   * Displays values last seen for the device until live values arrive.
+   */
+  @UiThread
+  private void restoreSnapshot() {
+    DeviceSnapshots.Values values = deviceSnapshots.getValues(deviceHelper.getDevice().getName());
+    if (values == null) {
+      return;
+    }
+    System.arraycopy(values.getLeds(), 0, ledStates, 0, Math.min(ledStates.length, values.getLeds().length));
+    System.arraycopy(values.getButtons(), 0, buttonStates, 0, Math.min(buttonStates.length, values.getButtons().length));
+    temperatureValues[0] = values.getTemperature();
+    analogInputValues[0] = values.getAnalogInput();
+    updateUI();
   }
 
+  /**
+   * Marks tile as showing live value. Time to the first live tile and to all of them is recorded
+   * once per load.
+   */
   @UiThread
-  private void showProgressDialog() {
-    if (isAdded()) {
-      ((CreatorActivity) getActivity()).setToolbarProgressbarVisibility(true);
-      //refreshBtn.setVisibility(View.INVISIBLE);
-      led1.setEnabled(false);
-      led2.setEnabled(false);
-      led3.setEnabled(false);
-      led4.setEnabled(false);
+  private void markFresh(int tile) {
+    if ((staleTiles & tile) == 0) {
+      return;
+    }
+    boolean first = staleTiles == ALL_TILES;
+    staleTiles &= ~tile;
+    if (loadStart != 0) {
+      long elapsed = System.nanoTime() - loadStart;
+      if (first) {
+        loadMetrics.recordFirstValue(elapsed);
+      }
+      if (staleTiles == 0) {
+        loadMetrics.recordComplete(elapsed);
+        loadStart = 0;
+      }
     }
   }
 
+  /**
+   * Marks tile as showing last known value, other tiles are not affected.
+   */
   @UiThread
-  private void hideProgressDialog() {
-    if (isAdded()) {
-      ((CreatorActivity) getActivity()).setToolbarProgressbarVisibility(false);
-      //refreshBtn.setVisibility(View.VISIBLE);
-      led1.setEnabled(true);
-      led2.setEnabled(true);
-      led3.setEnabled(true);
-      led4.setEnabled(true);
+  private void markStale(int tile) {
+    if ((staleTiles & tile) != 0) {
+      return;
     }
+    staleTiles |= tile;
+    updateUI();
   }
 
+  /**
+   * Marks tile stale and reports its failure. Tiles poll at the same rate and usually fail together,
+   * so failure is reported only by the first failing tile; it is reported again after all failing
+   * tiles have recovered. Other tiles show the failure by their stale state.
+   */
   @UiThread
-  private void handleRefreshSuccess(@NonNull Instances<LightControl> leds,
-                                    @NonNull Instances<IPSODigitalInput> buttons,
-                                    @NonNull Instances<Temperature> temperatures,
-                                    @NonNull Instances<AnalogInput> analogInputs) {
-    if (isAdded()) {
+  private void markFailed(int tile, DeviceServerException e) {
+    boolean first = failedTiles == 0;
+    failedTiles |= tile;
+    markStale(tile);
+    if (first || e instanceof NotFoundException) {
+      handleRefreshFailure(e);
+    }
+  }
+
+  @UiThread
+  private void saveSnapshot() {
+    deviceSnapshots.putValues(deviceHelper.getDevice().getName(), new DeviceSnapshots.Values(ledStates.clone(),
+        buttonStates.clone(), temperatureValues[0], analogInputValues[0]));
+  }
+
+  @UiThread
+  private void stopObserving() {
+    handler.removeCallbacks(startObservingTask);
+    for (Subscription subscription : subscriptions) {
+      subscription.unsubscribe();
+    }
+    subscriptions.clear();
+  }
 
-      List<LightControl> ledItems = leds.getItems();
-      ledStates[0] = ledItems.get(0).isOnOff();
-      ledStates[1] = ledItems.get(1).isOnOff();
-      ledStates[2] = ledItems.get(2).isOnOff();
-      ledStates[3] = ledItems.get(3).isOnOff();
-      buttonStates[0] = buttons.getItems().get(0).getState();
-      buttonStates[1] = buttons.getItems().get(1).getState();
-      temperatureValues[0] = temperatures.getItems().get(0).getSensorValue();
-      analogInputValues[0] = analogInputs.getItems().get(0).getCurrentValue();
-      updateUI();
+  @Override
+  protected void setupComponent(AppComponent appComponent) {
+    appComponent.inject(this);
+  }
 
+  /**
+   * Shows toolbar progress while any led update is pending.
+   */
+  @UiThread
+  private void updateProgress() {
+    if (!isAdded()) {
+      return;
+    }
+    boolean pending = false;
+    for (int i = 0; i < ledStates.length; i++) {
+      pending |= ledWriter.isPending(i);
     }
+    ((CreatorActivity) getActivity()).setToolbarProgressbarVisibility(pending);
   }
 
   @UiThread
@@ -277,7 +502,7 @@ public class InteractiveFragment extends FragmentWithProgressBar {
     } else if (e instanceof NetworkException) {
       resID = R.string.error_network;
     } else if (e instanceof NotFoundException) {
-      handler.removeCallbacks(refreshTask);
+      stopObserving();
       showDeviceOfflineDialog();
       return;
     } else {
@@ -290,7 +515,6 @@ public class InteractiveFragment extends FragmentWithProgressBar {
 
   @OnClick({R.id.led1, R.id.led2, R.id.led3, R.id.led4})
   void onLedClicked(ImageView imageView) {
-    showProgressDialog();
     int instanceId = 0;
 
     switch (imageView.getId()) {
@@ -307,42 +531,29 @@ public class InteractiveFragment extends FragmentWithProgressBar {
         instanceId = 3;
         break;
     }
-    final LightControl lightControl = new LightControl();
-    lightControl.setOnOff(!ledStates[instanceId]);
-
-    final int finalInstanceId = instanceId;
-
-    executor.submit(new Runnable() {
-      @Override
-      public void run() {
-        try {
-          Client client = caller.getClient(deviceHelper.getDevice().getName()).get();
-          caller.updateInstance(client, LIGHT_CONTROL_OBJECT_ID, finalInstanceId, lightControl, new TypeToken<LightControl>() {
-          });
-          ledStates[finalInstanceId] = !ledStates[finalInstanceId];
-          handler.post(new Runnable() {
-            @Override
-            public void run() {
-              hideProgressDialog();
-              updateUI();
-            }
-          });
-        } catch (ExecutionException e) {
-          handleSetLedFailure((DeviceServerException) e.getCause());
-        } catch (InterruptedException e) {
-          e.printStackTrace();
-        }
-      }
-    });
+    Boolean live = liveLedStates[instanceId];
+    if (live == null) {
+      // state shown may be restored from snapshot, toggling it could write value led already has
+      return;
+    }
+    boolean current = ledStates[instanceId];
+    ledStates[instanceId] = !current;
+    updateUI();
+    ledWriter.submit(instanceId, !current, live);
+    updateProgress();
   }
 
   private void handleSetLedFailure(final DeviceServerException e) {
     handler.post(new Runnable() {
       @Override
       public void run() {
-        hideProgressDialog();
+        // write in flight when screen was paused may fail after it was detached
+        if (!isAdded()) {
+          return;
+        }
+        updateProgress();
         if (e instanceof NotFoundException) {
-          handler.removeCallbacks(refreshTask);
+          stopObserving();
           showDeviceOfflineDialog();
         } else if (e instanceof NetworkException) {
           ActivitiesAndFragmentsHelper.showToast(getContext(), R.string.error_network, handler);
@@ -354,9 +565,10 @@ public class InteractiveFragment extends FragmentWithProgressBar {
   }
 
   private void showDeviceOfflineDialog() {
-    if (!isAdded()) {
+    if (!isAdded() || deviceOfflineDialogShown) {
       return;
     }
+    deviceOfflineDialogShown = true;
     new AlertDialog.Builder(getContext())
         .setTitle(R.string.device_is_offline)
         .setMessage(R.string.device_is_offline_msg)
@@ -369,33 +581,147 @@ public class InteractiveFragment extends FragmentWithProgressBar {
 
   }
 
+  /**
+   * Schedules rendering of current values on next animation frame. Values changed several times within
+   * one frame are rendered once.
+   */
   @UiThread
   private void updateUI() {
-    if (!isAdded()) {
+    if (!isAdded() || tempValue == null || renderScheduled) {
       return;
     }
-    handler.post(new Runnable() {
-      @Override
-      public void run() {
-        led1.setImageResource(ledStates[0] ? R.drawable.led_on : R.drawable.led_off);
-        led2.setImageResource(ledStates[1] ? R.drawable.led_on : R.drawable.led_off);
-        led3.setImageResource(ledStates[2] ? R.drawable.led_on : R.drawable.led_off);
-        led4.setImageResource(ledStates[3] ? R.drawable.led_on : R.drawable.led_off);
-        sw1.setImageResource(buttonStates[0] ? R.drawable.button_on : R.drawable.button_off);
-        sw2.setImageResource(buttonStates[1] ? R.drawable.button_on : R.drawable.button_off);
-        tempValue.setText(getString(R.string.celsius_value, String.format("%.2f", temperatureValues[0])));
-        potentiometerValue.setText(getString(R.string.volt_value, String.format("%.2f", analogInputValues[0])));
+    renderScheduled = true;
+    ViewCompat.postOnAnimation(tempValue, renderTask);
+  }
+
+  /**
+   * Updates only views whose displayed value differs from the current one. Rendering is traced as
+   * "InteractiveFragment.render" section, so its share of frame time can be seen in systrace.
+   */
+  @UiThread
+  private void render() {
+    TraceCompat.beginSection("InteractiveFragment.render");
+    try {
+      renderedLeds = renderStates(leds, ledStates, renderedLeds, R.drawable.led_on, R.drawable.led_off);
+      renderedButtons = renderStates(switches, buttonStates, renderedButtons, R.drawable.button_on, R.drawable.button_off);
+      if (staleTiles != renderedStaleTiles) {
+        int changed = renderedStaleTiles < 0 ? ALL_TILES : staleTiles ^ renderedStaleTiles;
+        renderStale(changed & TILE_LEDS, leds);
+        renderStale(changed & TILE_BUTTONS, switches);
+        renderStale(changed & TILE_TEMPERATURE, tempValue);
+        renderStale(changed & TILE_ANALOG_INPUT, potentiometerValue);
+        renderedStaleTiles = staleTiles;
       }
-    });
+      if (temperatureText.update(temperatureValues[0])) {
+        tempValue.setText(temperatureText.getBuffer(), 0, temperatureText.length());
+      }
+      if (analogInputText.update(analogInputValues[0])) {
+        potentiometerValue.setText(analogInputText.getBuffer(), 0, analogInputText.length());
+      }
+    } finally {
+      TraceCompat.endSection();
+    }
+  }
 
+  /**
+   * Sets images of views whose state differs from rendered one.
+   * @param rendered bit mask of states shown by views, -1 when unknown
+   * @return bit mask of states shown by views after update
+   */
+  private static int renderStates(ImageView[] views, boolean[] states, int rendered,
+                                  @DrawableRes int onImage, @DrawableRes int offImage) {
+    int mask = 0;
+    for (int i = 0; i < states.length; i++) {
+      int bit = 1 << i;
+      if (states[i]) {
+        mask |= bit;
+      }
+      if (rendered < 0 || (rendered & bit) != (mask & bit)) {
+        views[i].setImageResource(states[i] ? onImage : offImage);
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Dims views of tile when it became stale, restores them when it became fresh.
+   * @param tile changed tile, 0 when it did not change
+   */
+  private void renderStale(int tile, View... views) {
+    if (tile == 0) {
+      return;
+    }
+    float alpha = (staleTiles & tile) != 0 ? STALE_ALPHA : 1f;
+    for (View view : views) {
+      view.setAlpha(alpha);
+    }
   }
 
-  private Runnable refreshTask = new Runnable() {
+  private final Runnable renderTask = new Runnable() {
     @Override
     public void run() {
-      refresh();
+      renderScheduled = false;
+      if (isAdded() && tempValue != null) {
+        render();
+      }
     }
   };
 
 
+  private Runnable startObservingTask = new Runnable() {
+    @Override
+    public void run() {
+      startObserving();
+    }
+  };
+
+  /**
+   * Observer of single tile, delivers values and errors on UI thread. Every tile is shown as soon as its
+   * value arrives, failure of one tile only marks it stale.
+   */
+  private abstract class UiObserver<T> implements Observer<T> {
+
+    private final int tile;
+
+    UiObserver(int tile) {
+      this.tile = tile;
+    }
+
+    @Override
+    public void onNext(final T value) {
+      handler.post(new Runnable() {
+        @Override
+        public void run() {
+          if (!isAdded()) {
+            return;
+          }
+          if (onValue(value)) {
+            failedTiles &= ~tile;
+            markFresh(tile);
+            updateUI();
+            saveSnapshot();
+          } else {
+            markFailed(tile, new ParseException());
+          }
+        }
+      });
+    }
+
+    @Override
+    public void onError(final DeviceServerException e) {
+      handler.post(new Runnable() {
+        @Override
+        public void run() {
+          markFailed(tile, e);
+        }
+      });
+    }
+
+    /**
+     * Stores value to be rendered.
+     * @return false when value can not be displayed, e.g. it has fewer instances than expected
+     */
+    @UiThread
+    abstract boolean onValue(T value);
+  }
 }
@@ -46,13 +46,14 @@ import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.imgtec.creator.iup.R;
 import com.imgtec.creator.iup.activities.CreatorActivity;
 import com.imgtec.creator.iup.di.component.AppComponent;
 import com.imgtec.creator.iup.ds.DSService;
 import com.imgtec.creator.iup.ds.pojo.Client;
-import com.imgtec.creator.iup.ds.pojo.Clients;
 import com.imgtec.creator.iup.fragments.menu.ConnectedDevicesFragment;
 import com.imgtec.creator.iup.fragments.navigationdrawer.NDListeningFragment;
 import com.imgtec.creator.iup.fragments.navigationdrawer.NDMenuItem;
@@ -65,7 +66,7 @@ import com.imgtec.creator.iup.utils.SimpleFragmentFactory;
 
 import java.util.Calendar;
 import java.util.Date;
-import java.util.concurrent.ExecutionException;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -285,32 +286,31 @@ public class ConnectingFragment extends NDListeningFragment {
       waitForDeviceRunnable = new Runnable() {
         @Override
         public void run() {
-          try {
-            ListenableFuture<Clients> future = caller.getClients(0, 100);
-            Clients clients = future.get();
-            for (Client client : clients.getItems()) {
-              if (client.getName().equals(SetupGuideInfoSingleton.getBoardSsid())) {
+          final String boardName = SetupGuideInfoSingleton.getBoardSsid();
+          ListenableFuture<List<Client>> future = caller.findClientsByName(new Predicate<String>() {
+            @Override
+            public boolean apply(String name) {
+              return name != null && name.equals(boardName);
+            }
+          }, 1);
+          requestScope.addCallback(future, new FutureCallback<List<Client>>() {
+            @Override
+            public void onSuccess(List<Client> clients) {
+              if (!clients.isEmpty()) {
                 currentBoardState = BoardState.DS_CONNECTED;
-                handler.post(new Runnable() {
-                  @Override
-                  public void run() {
-                    updateUI();
-
-                  }
-                });
-
+                updateUI();
+              }
+              if (new Date().before(expiryTime)) {
+                handler.postDelayed(waitForDeviceRunnable, DELAY_TIME);
               }
-            }
-            if (new Date().before(expiryTime)) {
-              handler.postDelayed(waitForDeviceRunnable, DELAY_TIME);
             }
 
-          } catch (ExecutionException e) {
-            //ToDo handle this exception properly
-            e.printStackTrace();
-          } catch (InterruptedException e) {
-            e.printStackTrace();
-          }
+            @Override
+            public void onFailure(Throwable t) {
+              //ToDo handle this exception properly
+              t.printStackTrace();
+            }
+          });
         }
       };
       handler.postDelayed(waitForDeviceRunnable, DELAY_TIME);
@@ -41,18 +41,21 @@ import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.imgtec.creator.iup.R;
 import com.imgtec.creator.iup.di.component.AppComponent;
 import com.imgtec.creator.iup.ds.DSService;
 import com.imgtec.creator.iup.ds.pojo.Bootstrap;
 import com.imgtec.creator.iup.ds.pojo.PSK;
+import com.imgtec.creator.iup.ds.pojo.Pojo;
 import com.imgtec.creator.iup.fragments.common.FragmentWithTitle;
 import com.imgtec.creator.iup.utils.Preferences;
 import com.imgtec.creator.iup.utils.SetupGuideInfoSingleton;
 import com.imgtec.creator.iup.utils.SimpleFragmentFactory;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
+import java.util.List;
 
 import javax.inject.Inject;
 
@@ -67,7 +70,6 @@ public class FetchCertificateFragment extends FragmentWithTitle {
 
   @Inject DSService DSService;
   @Inject Preferences preferences;
-  @Inject ExecutorService executor;
 
 
   Unbinder unbinder;
@@ -120,43 +122,32 @@ public class FetchCertificateFragment extends FragmentWithTitle {
   private void startFetching() {
     progressBar.setVisibility(View.VISIBLE);
 
-    executor.submit(new Runnable() {
+    final ListenableFuture<PSK> pskFuture = DSService.generatePSK();
+    final ListenableFuture<Bootstrap> bootstrapFuture = DSService.getBootstrap();
+    requestScope.addCallback(Futures.allAsList(pskFuture, bootstrapFuture), new FutureCallback<List<Pojo>>() {
       @Override
-      public void run() {
-        try {
-          PSK psk = DSService.generatePSK().get();
-          Bootstrap bootstrap = DSService.getBootstrap().get();
-
-          SetupGuideInfoSingleton.setPskIdentity(psk.getIdentity());
-          SetupGuideInfoSingleton.setPskSecret(psk.getSecret());
-          SetupGuideInfoSingleton.setBootstrapUrl(bootstrap.getUrl());
-          getActivity().runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-              progressBar.setVisibility(View.GONE);
-              certImage.setVisibility(View.VISIBLE);
-              info.setText("Successfully fetched certificate from Device Server.");
-              retryButton.setVisibility(View.GONE);
-              continueButton.setVisibility(View.VISIBLE);
-              continueButton.setEnabled(true);
-            }
-          });
-
-        } catch (ExecutionException e) {
-          if (FetchCertificateFragment.this.isAdded()) {
-            getActivity().runOnUiThread(new Runnable() {
-              @Override
-              public void run() {
-                progressBar.setVisibility(View.INVISIBLE);
-                continueButton.setVisibility(View.GONE);
-                retryButton.setVisibility(View.VISIBLE);
-                info.setText("Failed to fetch certificate from Device Server.");
-              }
-            });
-          }
-        } catch (InterruptedException e) {
-          e.printStackTrace();
-        }
+      public void onSuccess(List<Pojo> result) {
+        PSK psk = Futures.getUnchecked(pskFuture);
+        Bootstrap bootstrap = Futures.getUnchecked(bootstrapFuture);
+
+        SetupGuideInfoSingleton.setPskIdentity(psk.getIdentity());
+        SetupGuideInfoSingleton.setPskSecret(psk.getSecret());
+        SetupGuideInfoSingleton.setBootstrapUrl(bootstrap.getUrl());
+
+        progressBar.setVisibility(View.GONE);
+        certImage.setVisibility(View.VISIBLE);
+        info.setText("Successfully fetched certificate from Device Server.");
+        retryButton.setVisibility(View.GONE);
+        continueButton.setVisibility(View.VISIBLE);
+        continueButton.setEnabled(true);
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        progressBar.setVisibility(View.INVISIBLE);
+        continueButton.setVisibility(View.GONE);
+        retryButton.setVisibility(View.VISIBLE);
+        info.setText("Failed to fetch certificate from Device Server.");
       }
     });
   }
@@ -49,16 +49,19 @@ import com.imgtec.creator.iup.activities.ActivitiesAndFragmentsHelper;
 import com.imgtec.creator.iup.activities.LogInActivity;
 import com.imgtec.creator.iup.adapters.NDMenuAdapter;
 import com.imgtec.creator.iup.di.component.AppComponent;
+import com.imgtec.creator.iup.ds.DSService;
 import com.imgtec.creator.iup.wifire.DeviceHelper;
+import com.imgtec.creator.iup.wifire.DeviceSnapshots;
 import com.imgtec.creator.iup.fragments.menu.AboutFragment;
 import com.imgtec.creator.iup.fragments.menu.ConnectedDevicesFragment;
 import com.imgtec.creator.iup.fragments.menu.DeviceInfoFragment;
 import com.imgtec.creator.iup.fragments.menu.CreatorDeviceInfoFragment;
+import com.imgtec.creator.iup.fragments.menu.DiagnosticsFragment;
 import com.imgtec.creator.iup.fragments.menu.InteractiveFragment;
 import com.imgtec.creator.iup.fragments.menu.setupguide.LogInToWifiFragment;
 import com.imgtec.creator.iup.fragments.menu.setupguide.SetUpWifireDeviceFragment;
 import com.imgtec.creator.iup.utils.NDMenuMode;
-import com.imgtec.creator.iup.utils.Preferences;
+import com.imgtec.creator.iup.utils.SessionStore;
 import com.imgtec.creator.iup.utils.SimpleFragmentFactory;
 
 import javax.inject.Inject;
@@ -88,7 +91,9 @@ public class NDMenuFragment extends NDListeningFragment {
   @Named("UI")
   Handler handler;
   @Inject DeviceHelper deviceHelper;
-  @Inject Preferences preferences;
+  @Inject SessionStore sessionStore;
+  @Inject DSService dsService;
+  @Inject DeviceSnapshots deviceSnapshots;
 
   Unbinder unbinder;
 
@@ -103,6 +108,18 @@ public class NDMenuFragment extends NDListeningFragment {
         selectFragment((NDMenuItem) ndMenuAdapter.getItem(position));
       }
     });
+    drawerListView.setOnItemLongClickListener(new AdapterView.OnItemLongClickListener() {
+      @Override
+      public boolean onItemLongClick(AdapterView<?> parent, View view, int position, long id) {
+        // diagnostics screen is hidden behind long click on "About"
+        if (ndMenuAdapter.getItem(position) != NDMenuItem.About || menuListener == null) {
+          return false;
+        }
+        closeDrawer();
+        menuListener.onFragmentChangeWithBackstackClear(SimpleFragmentFactory.createFragment(DiagnosticsFragment.TAG));
+        return true;
+      }
+    });
     restartNavigationDrawer(NDMenuMode.Initial);
     return rootView;
   }
@@ -117,16 +134,16 @@ public class NDMenuFragment extends NDListeningFragment {
     NDMenuMode.setMode(mode);
     switch (mode) {
       case Initial:
-        ndMenuAdapter = new NDMenuAdapter((Activity) menuListener, NDMenuItem.initialValues(), preferences, deviceHelper);
+        ndMenuAdapter = new NDMenuAdapter((Activity) menuListener, NDMenuItem.initialValues(), sessionStore, deviceHelper);
         break;
       case Setup:
-        ndMenuAdapter = new NDMenuAdapter((Activity) menuListener, NDMenuItem.wifiNetworkModeValues(), preferences, deviceHelper);
+        ndMenuAdapter = new NDMenuAdapter((Activity) menuListener, NDMenuItem.wifiNetworkModeValues(), sessionStore, deviceHelper);
         break;
       case Interactive:
-        ndMenuAdapter = new NDMenuAdapter((Activity) menuListener, NDMenuItem.interactiveModeValues(), preferences, deviceHelper);
+        ndMenuAdapter = new NDMenuAdapter((Activity) menuListener, NDMenuItem.interactiveModeValues(), sessionStore, deviceHelper);
         break;
       default:
-        ndMenuAdapter = new NDMenuAdapter((Activity) menuListener, NDMenuItem.initialValues(), preferences, deviceHelper);
+        ndMenuAdapter = new NDMenuAdapter((Activity) menuListener, NDMenuItem.initialValues(), sessionStore, deviceHelper);
     }
 
     drawerListView.setAdapter(ndMenuAdapter);
@@ -224,9 +241,8 @@ public class NDMenuFragment extends NDListeningFragment {
 
   private void logoutUser() {
     NDMenuMode.setMode(NDMenuMode.Initial);
-    preferences.setAutologin(false);
-    preferences.setRefreshToken("");
-    preferences.setAccessToken("");
+    dsService.logout();
+    deviceSnapshots.clear();
     afterLogoutUser();
   }
 
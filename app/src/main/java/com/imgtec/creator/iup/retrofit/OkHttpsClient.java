@@ -33,6 +33,8 @@ package com.imgtec.creator.iup.retrofit;
 
 import android.support.annotation.Nullable;
 
+import com.imgtec.creator.iup.utils.NetworkMetrics;
+
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
@@ -59,6 +61,7 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import okhttp3.ConnectionSpec;
+import okhttp3.Dns;
 import okhttp3.OkHttpClient;
 import okhttp3.Protocol;
 import okhttp3.TlsVersion;
@@ -66,7 +69,7 @@ import okhttp3.logging.HttpLoggingInterceptor;
 
 public class OkHttpsClient {
 
-  public static OkHttpClient newOkHttpsClient(@Nullable SocketFactory socketFactory) {
+  public static OkHttpClient newOkHttpsClient(@Nullable SocketFactory socketFactory, NetworkMetrics metrics) {
     try {
       TrustManager trustManager = new TrustyTrustManager();
       HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor();
@@ -87,14 +90,21 @@ public class OkHttpsClient {
           .hostnameVerifier(new TrustyHostnameVerifier())
           .protocols(Collections.singletonList(Protocol.HTTP_1_1))
           .connectionSpecs(Arrays.asList(cs1, cs))
-          .addInterceptor(loggingInterceptor);
+          .dns(metrics.wrap(Dns.SYSTEM))
+          .addInterceptor(loggingInterceptor)
+          .addInterceptor(metrics.getInterceptor())
+          .addNetworkInterceptor(metrics.getNetworkInterceptor());
 
 
       if (socketFactory != null) {
         builder.socketFactory(socketFactory);
+      } else {
+        builder.socketFactory(metrics.getSocketFactory());
       }
 
-      return builder.build();
+      OkHttpClient client = builder.build();
+      metrics.setDispatcher(client.dispatcher());
+      return client;
 
     } catch (Exception e) {
       return new OkHttpClient();
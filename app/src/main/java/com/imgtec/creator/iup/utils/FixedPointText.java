@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.utils;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Keeps text of number displayed with fixed count of fraction digits within a string pattern, e.g.
+ * {@code "%1$s V"}. Text is rendered into reused char buffer and only when its displayed digits change,
+ * so frequently refreshed values neither allocate nor touch their views without need. Digits and decimal
+ * separator follow default locale like {@code String.format("%.2f", value)} does.
+ *
+ * This class is not thread safe.
+ */
+public class FixedPointText {
+
+  private static final String PLACEHOLDER = "%1$s";
+  /**
+   * Scaled values above this limit are formatted by {@link String#format(String, Object...)}.
+   */
+  private static final double MAX_FAST_UNITS = 1e15;
+
+  private final String prefix;
+  private final String suffix;
+  private final int fractionDigits;
+  private final long scale;
+  private final char zeroDigit;
+  private final char decimalSeparator;
+
+  private char[] buffer;
+  private int length;
+  private boolean hasValue;
+  private boolean fast;
+  private boolean negative;
+  private long units;
+  private int bits;
+
+  /**
+   * @param pattern text with single {@code %1$s} placeholder of the number
+   * @param fractionDigits number of digits after decimal separator
+   */
+  public FixedPointText(String pattern, int fractionDigits) {
+    int index = pattern.indexOf(PLACEHOLDER);
+    if (index < 0) {
+      throw new IllegalArgumentException("Pattern has no " + PLACEHOLDER + " placeholder: " + pattern);
+    }
+    if (fractionDigits < 0 || fractionDigits > 6) {
+      throw new IllegalArgumentException("Unsupported fraction digits: " + fractionDigits);
+    }
+    this.prefix = pattern.substring(0, index);
+    this.suffix = pattern.substring(index + PLACEHOLDER.length());
+    this.fractionDigits = fractionDigits;
+    long scale = 1;
+    for (int i = 0; i < fractionDigits; i++) {
+      scale *= 10;
+    }
+    this.scale = scale;
+    DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance();
+    this.zeroDigit = symbols.getZeroDigit();
+    this.decimalSeparator = symbols.getDecimalSeparator();
+    // sign, 16 integer digits, separator and fraction digits
+    this.buffer = new char[prefix.length() + suffix.length() + 18 + fractionDigits];
+  }
+
+  /**
+   * Sets displayed value.
+   * @return false when displayed text stays the same, so views do not need to be updated
+   */
+  public boolean update(float value) {
+    double scaled = Math.abs((double) value) * scale;
+    if (scaled < MAX_FAST_UNITS) {
+      long units = Math.round(scaled);
+      // negative values rounded to zero keep their sign, as "-0.00"
+      boolean negative = Float.floatToIntBits(value) < 0;
+      if (hasValue && fast && units == this.units && negative == this.negative) {
+        return false;
+      }
+      this.units = units;
+      this.negative = negative;
+      this.fast = true;
+      render(negative, units);
+    } else {
+      int bits = Float.floatToIntBits(value);
+      if (hasValue && !fast && bits == this.bits) {
+        return false;
+      }
+      this.bits = bits;
+      this.fast = false;
+      render(String.format(Locale.getDefault(), "%." + fractionDigits + "f", value));
+    }
+    hasValue = true;
+    return true;
+  }
+
+  /**
+   * Forgets displayed value, so next {@link #update(float)} reports change, e.g. after views are recreated.
+   */
+  public void reset() {
+    hasValue = false;
+  }
+
+  /**
+   * Returns buffer holding current text. Its content changes on following updates.
+   */
+  public char[] getBuffer() {
+    return buffer;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public String toString() {
+    return new String(buffer, 0, length);
+  }
+
+  private void render(boolean negative, long units) {
+    int pos = append(prefix, 0);
+    if (negative) {
+      buffer[pos++] = '-';
+    }
+    long integer = units / scale;
+    long fraction = units % scale;
+    int start = pos;
+    do {
+      buffer[pos++] = (char) (zeroDigit + integer % 10);
+      integer /= 10;
+    } while (integer > 0);
+    reverse(start, pos);
+    if (fractionDigits > 0) {
+      buffer[pos++] = decimalSeparator;
+      for (int i = fractionDigits - 1; i >= 0; i--) {
+        buffer[pos + i] = (char) (zeroDigit + fraction % 10);
+        fraction /= 10;
+      }
+      pos += fractionDigits;
+    }
+    length = append(suffix, pos);
+  }
+
+  private void render(String number) {
+    int required = prefix.length() + number.length() + suffix.length();
+    if (required > buffer.length) {
+      buffer = new char[required];
+    }
+    length = append(suffix, append(number, append(prefix, 0)));
+  }
+
+  private int append(String s, int pos) {
+    s.getChars(0, s.length(), buffer, pos);
+    return pos + s.length();
+  }
+
+  private void reverse(int from, int to) {
+    for (int i = from, j = to - 1; i < j; i++, j--) {
+      char c = buffer[i];
+      buffer[i] = buffer[j];
+      buffer[j] = c;
+    }
+  }
+}
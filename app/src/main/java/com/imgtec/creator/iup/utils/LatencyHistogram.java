@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histogram of durations with logarithmic buckets: every bucket is 25% wider than the previous one,
+ * so percentiles are reported with bounded relative error while memory stays constant. Durations
+ * shorter than 0.1 ms fall into the first bucket, longer than about 2 minutes into the last one.
+ *
+ * This class is thread safe.
+ */
+public class LatencyHistogram {
+
+  private static final long FIRST_BOUND_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  private static final double GROWTH = 1.25;
+  private static final long[] BOUNDS = new long[64];
+
+  static {
+    double bound = FIRST_BOUND_NANOS;
+    for (int i = 0; i < BOUNDS.length; ++i) {
+      BOUNDS[i] = (long) bound;
+      bound *= GROWTH;
+    }
+  }
+
+  private final long[] counts = new long[BOUNDS.length + 1];
+  private long count;
+  private long totalNanos;
+  private long maxNanos;
+
+  public synchronized void record(long nanos) {
+    counts[bucketOf(nanos)]++;
+    count++;
+    totalNanos += nanos;
+    maxNanos = Math.max(maxNanos, nanos);
+  }
+
+  public synchronized long getCount() {
+    return count;
+  }
+
+  /**
+   * @return mean of recorded durations in milliseconds, 0 when empty
+   */
+  public synchronized double getMeanMillis() {
+    return count > 0 ? toMillis(totalNanos / count) : 0;
+  }
+
+  public synchronized double getMaxMillis() {
+    return toMillis(maxNanos);
+  }
+
+  /**
+   * @param percentile value in range (0, 100]
+   * @return upper bound in milliseconds of the bucket holding specified percentile, 0 when empty
+   */
+  public synchronized double getPercentileMillis(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(count * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < counts.length; ++i) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return toMillis(i < BOUNDS.length ? Math.min(BOUNDS[i], maxNanos) : maxNanos);
+      }
+    }
+    return toMillis(maxNanos);
+  }
+
+  private static int bucketOf(long nanos) {
+    int low = 0;
+    int high = BOUNDS.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (BOUNDS[mid] < nanos) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1e6;
+  }
+}
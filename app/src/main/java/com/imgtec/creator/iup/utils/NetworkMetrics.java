@@ -0,0 +1,474 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.utils;
+
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.net.SocketFactory;
+
+import okhttp3.Connection;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Collects timing and traffic of requests made by single {@link okhttp3.OkHttpClient}. Requests are
+ * grouped by endpoint template: method, host and path with identifier segments replaced by "{id}".
+ * For every endpoint latency until response headers, time to first byte, bytes in and out, cache hits
+ * and error classes are recorded. Connection phases (DNS lookup, TCP connect, TLS handshake and whole
+ * connection setup) are recorded per client, since they can not be attributed to a single endpoint.
+ *
+ * To collect everything, client must be built with {@link #getInterceptor()} as application
+ * interceptor, {@link #getNetworkInterceptor()} as network interceptor, {@link #wrap(Dns)} and
+ * {@link #getSocketFactory()}. TCP connect and TLS handshake times are known only for sockets created
+ * by {@link #getSocketFactory()}.
+ *
+ * This class is thread safe.
+ */
+public class NetworkMetrics {
+
+  private static final int MAX_ENDPOINTS = 100;
+  private static final String OTHER_ENDPOINT = "other";
+  /**
+   * Path segments which look like identifiers: contain a digit or are too long to be a name.
+   */
+  private static final Pattern ID_SEGMENT = Pattern.compile(".*\\d.*|.{21,}");
+
+  private final String name;
+  private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+  private final LatencyHistogram dns = new LatencyHistogram();
+  private final LatencyHistogram connect = new LatencyHistogram();
+  private final LatencyHistogram tls = new LatencyHistogram();
+  private final LatencyHistogram setup = new LatencyHistogram();
+  private final Set<Connection> connections = Collections.newSetFromMap(new WeakHashMap<Connection, Boolean>());
+  private final ThreadLocal<CallTiming> currentCall = new ThreadLocal<>();
+  private volatile Dispatcher dispatcher;
+
+  /**
+   * @param name name of the client, included in exported data
+   */
+  public NetworkMetrics(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Sets dispatcher of the client, its queue depth is included in exported data.
+   */
+  public void setDispatcher(Dispatcher dispatcher) {
+    this.dispatcher = dispatcher;
+  }
+
+  /**
+   * @return application interceptor measuring requests, should be added before other interceptors that
+   * do not buffer response body
+   */
+  public Interceptor getInterceptor() {
+    return new MetricsInterceptor();
+  }
+
+  /**
+   * @return network interceptor measuring time to first byte and connection setup
+   */
+  public Interceptor getNetworkInterceptor() {
+    return new MetricsNetworkInterceptor();
+  }
+
+  /**
+   * @return dns measuring lookups made by delegate
+   */
+  public Dns wrap(Dns delegate) {
+    return new TimingDns(delegate);
+  }
+
+  /**
+   * @return factory of plain sockets measuring time of TCP connect
+   */
+  public SocketFactory getSocketFactory() {
+    return new TimingSocketFactory();
+  }
+
+  /**
+   * Exports collected data. Durations are in milliseconds.
+   */
+  public JsonObject toJson() {
+    JsonObject json = new JsonObject();
+    json.addProperty("name", name);
+
+    Dispatcher dispatcher = this.dispatcher;
+    if (dispatcher != null) {
+      JsonObject queue = new JsonObject();
+      queue.addProperty("running", dispatcher.runningCallsCount());
+      queue.addProperty("queued", dispatcher.queuedCallsCount());
+      json.add("dispatcher", queue);
+    }
+
+    JsonObject phases = new JsonObject();
+    phases.add("dns", toJson(dns));
+    phases.add("connect", toJson(connect));
+    phases.add("tls", toJson(tls));
+    phases.add("setup", toJson(setup));
+    json.add("phases", phases);
+
+    JsonObject endpointsJson = new JsonObject();
+    for (Map.Entry<String, Endpoint> entry : new TreeMap<>(endpoints).entrySet()) {
+      endpointsJson.add(entry.getKey(), entry.getValue().toJson());
+    }
+    json.add("endpoints", endpointsJson);
+    return json;
+  }
+
+  /**
+   * Returns template of request used to group requests, e.g. "GET deviceserver.creatordev.io/clients/{id}".
+   */
+  public static String templateOf(Request request) {
+    HttpUrl url = request.url();
+    StringBuilder builder = new StringBuilder(request.method()).append(' ').append(url.host());
+    List<String> segments = url.pathSegments();
+    for (String segment : segments) {
+      builder.append('/');
+      if (ID_SEGMENT.matcher(segment).matches()) {
+        builder.append("{id}");
+      } else {
+        builder.append(segment);
+      }
+    }
+    return builder.toString();
+  }
+
+  private Endpoint endpointOf(Request request) {
+    String template = templateOf(request);
+    Endpoint endpoint = endpoints.get(template);
+    if (endpoint != null) {
+      return endpoint;
+    }
+    synchronized (endpoints) {
+      endpoint = endpoints.get(template);
+      if (endpoint == null) {
+        if (endpoints.size() >= MAX_ENDPOINTS) {
+          template = OTHER_ENDPOINT;
+          endpoint = endpoints.get(template);
+        }
+        if (endpoint == null) {
+          endpoint = new Endpoint();
+          endpoints.put(template, endpoint);
+        }
+      }
+      return endpoint;
+    }
+  }
+
+  /**
+   * Records setup of connection used for the first time.
+   */
+  private void recordConnection(CallTiming timing, Connection connection, long now) {
+    if (connection == null) {
+      return;
+    }
+    synchronized (connections) {
+      if (!connections.add(connection)) {
+        return;
+      }
+    }
+    long setupNanos = now - timing.start;
+    setup.record(setupNanos);
+    if (connection.handshake() != null && timing.connectNanos > 0) {
+      tls.record(Math.max(0, setupNanos - timing.dnsNanos - timing.connectNanos));
+    }
+  }
+
+  static JsonObject toJson(LatencyHistogram histogram) {
+    JsonObject json = new JsonObject();
+    json.addProperty("count", histogram.getCount());
+    json.addProperty("mean", round(histogram.getMeanMillis()));
+    json.addProperty("p50", round(histogram.getPercentileMillis(50)));
+    json.addProperty("p95", round(histogram.getPercentileMillis(95)));
+    json.addProperty("p99", round(histogram.getPercentileMillis(99)));
+    json.addProperty("max", round(histogram.getMaxMillis()));
+    return json;
+  }
+
+  private static double round(double millis) {
+    return Math.round(millis * 10) / 10.0;
+  }
+
+  /**
+   * Timing of call currently executed by thread, shared by interceptors, dns and sockets.
+   */
+  private static class CallTiming {
+    final long start = System.nanoTime();
+    long dnsNanos;
+    long connectNanos;
+    long networkStart;
+    long ttfbNanos = -1;
+  }
+
+  private static class Endpoint {
+    final LatencyHistogram latency = new LatencyHistogram();
+    final LatencyHistogram ttfb = new LatencyHistogram();
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong cacheHits = new AtomicLong();
+    final AtomicLong bytesIn = new AtomicLong();
+    final AtomicLong bytesOut = new AtomicLong();
+    final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+
+    void recordError(String errorClass) {
+      AtomicLong counter = errors.get(errorClass);
+      if (counter == null) {
+        synchronized (errors) {
+          counter = errors.get(errorClass);
+          if (counter == null) {
+            counter = new AtomicLong();
+            errors.put(errorClass, counter);
+          }
+        }
+      }
+      counter.incrementAndGet();
+    }
+
+    JsonObject toJson() {
+      JsonObject json = new JsonObject();
+      json.addProperty("requests", requests.get());
+      json.addProperty("cacheHits", cacheHits.get());
+      json.addProperty("bytesIn", bytesIn.get());
+      json.addProperty("bytesOut", bytesOut.get());
+      json.add("latency", NetworkMetrics.toJson(latency));
+      json.add("ttfb", NetworkMetrics.toJson(ttfb));
+      JsonObject errorsJson = new JsonObject();
+      for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(errors).entrySet()) {
+        errorsJson.addProperty(entry.getKey(), entry.getValue().get());
+      }
+      json.add("errors", errorsJson);
+      return json;
+    }
+  }
+
+  private class MetricsInterceptor implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      Request request = chain.request();
+      Endpoint endpoint = endpointOf(request);
+      endpoint.requests.incrementAndGet();
+      RequestBody requestBody = request.body();
+      if (requestBody != null && requestBody.contentLength() > 0) {
+        endpoint.bytesOut.addAndGet(requestBody.contentLength());
+      }
+
+      CallTiming previous = currentCall.get();
+      CallTiming timing = new CallTiming();
+      currentCall.set(timing);
+      Response response;
+      try {
+        response = chain.proceed(request);
+      } catch (IOException e) {
+        endpoint.recordError(e.getClass().getSimpleName());
+        throw e;
+      } finally {
+        currentCall.set(previous);
+      }
+
+      endpoint.latency.record(System.nanoTime() - timing.start);
+      if (timing.ttfbNanos >= 0) {
+        endpoint.ttfb.record(timing.ttfbNanos);
+      }
+      if (response.cacheResponse() != null && response.networkResponse() == null) {
+        endpoint.cacheHits.incrementAndGet();
+      }
+      if (response.code() >= 400) {
+        endpoint.recordError("http_" + response.code() / 100 + "xx");
+      }
+      ResponseBody body = response.body();
+      if (body == null) {
+        return response;
+      }
+      return response.newBuilder().body(new CountingResponseBody(body, endpoint.bytesIn)).build();
+    }
+  }
+
+  private class MetricsNetworkInterceptor implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      CallTiming timing = currentCall.get();
+      if (timing == null) {
+        return chain.proceed(chain.request());
+      }
+      long start = System.nanoTime();
+      if (timing.networkStart == 0) {
+        timing.networkStart = start;
+      }
+      recordConnection(timing, chain.connection(), start);
+      Response response = chain.proceed(chain.request());
+      // the last hop (e.g. after authentication challenge) counts
+      timing.ttfbNanos = System.nanoTime() - start;
+      return response;
+    }
+  }
+
+  private class TimingDns implements Dns {
+    private final Dns delegate;
+
+    TimingDns(Dns delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+      long start = System.nanoTime();
+      try {
+        return delegate.lookup(hostname);
+      } finally {
+        long nanos = System.nanoTime() - start;
+        dns.record(nanos);
+        CallTiming timing = currentCall.get();
+        if (timing != null) {
+          timing.dnsNanos += nanos;
+        }
+      }
+    }
+  }
+
+  private class TimingSocketFactory extends SocketFactory {
+
+    @Override
+    public Socket createSocket() {
+      return new TimingSocket();
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+      return SocketFactory.getDefault().createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+      return SocketFactory.getDefault().createSocket(host, port, localHost, localPort);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+      return SocketFactory.getDefault().createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+      return SocketFactory.getDefault().createSocket(address, port, localAddress, localPort);
+    }
+  }
+
+  private class TimingSocket extends Socket {
+
+    @Override
+    public void connect(SocketAddress endpoint, int timeout) throws IOException {
+      long start = System.nanoTime();
+      try {
+        super.connect(endpoint, timeout);
+      } finally {
+        long nanos = System.nanoTime() - start;
+        connect.record(nanos);
+        CallTiming timing = currentCall.get();
+        if (timing != null) {
+          timing.connectNanos += nanos;
+        }
+      }
+    }
+  }
+
+  /**
+   * Counts bytes of response body as it is consumed.
+   */
+  private static class CountingResponseBody extends ResponseBody {
+    private final ResponseBody delegate;
+    private final AtomicLong counter;
+    private BufferedSource source;
+
+    CountingResponseBody(ResponseBody delegate, AtomicLong counter) {
+      this.delegate = delegate;
+      this.counter = counter;
+    }
+
+    @Override
+    public MediaType contentType() {
+      return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+      return delegate.contentLength();
+    }
+
+    @Override
+    public synchronized BufferedSource source() {
+      if (source == null) {
+        source = Okio.buffer(new ForwardingSource(delegate.source()) {
+          @Override
+          public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+              counter.addAndGet(read);
+            }
+            return read;
+          }
+        });
+      }
+      return source;
+    }
+  }
+}
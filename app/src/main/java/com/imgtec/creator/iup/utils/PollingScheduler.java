@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.utils;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules periodic polling of live data. Every polled resource is represented by a {@link Stream}
+ * which adapts its interval to the observed rate of change: interval shrinks towards minimum when
+ * polled values change and grows towards maximum when they don't. Failed polls are retried with
+ * exponential, jittered backoff. All streams are paused while network is unavailable and polled
+ * immediately once it comes back.
+ *
+ * There is never more than one poll of the same stream in flight.
+ */
+public class PollingScheduler {
+
+  /**
+   * Polls resource once.
+   */
+  public interface Task {
+    /**
+     * @return future that resolves to true if polled value differs from previous one
+     */
+    ListenableFuture<Boolean> poll();
+  }
+
+  /**
+   * Interval limits of a single stream, all values in milliseconds.
+   */
+  public static class Policy {
+    final long minInterval;
+    final long maxInterval;
+    final long maxBackoff;
+
+    public Policy(long minInterval, long maxInterval, long maxBackoff) {
+      this.minInterval = minInterval;
+      this.maxInterval = maxInterval;
+      this.maxBackoff = maxBackoff;
+    }
+  }
+
+  private static final double SLOWDOWN_FACTOR = 1.5;
+  private static final double JITTER = 0.2;
+
+  private final ScheduledExecutorService scheduler;
+  private final Set<Stream> streams = new CopyOnWriteArraySet<>();
+  private final Random random = new Random();
+  private volatile boolean networkAvailable = true;
+
+  public PollingScheduler(ScheduledExecutorService scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Creates new stream and polls it immediately.
+   */
+  public Stream start(String name, Policy policy, Task task) {
+    Stream stream = new Stream(name, policy, task);
+    streams.add(stream);
+    stream.scheduleNow();
+    return stream;
+  }
+
+  /**
+   * Informs scheduler about connectivity changes. Losing network pauses all streams, regaining it
+   * polls them immediately.
+   */
+  public void setNetworkAvailable(boolean available) {
+    if (networkAvailable == available) {
+      return;
+    }
+    networkAvailable = available;
+    for (Stream stream : streams) {
+      if (available) {
+        stream.scheduleNow();
+      } else {
+        stream.cancelScheduled();
+      }
+    }
+  }
+
+  public boolean isNetworkAvailable() {
+    return networkAvailable;
+  }
+
+  private long withJitter(long delay) {
+    double factor;
+    synchronized (random) {
+      factor = 1 + JITTER * (2 * random.nextDouble() - 1);
+    }
+    return (long) (delay * factor);
+  }
+
+  /**
+   * Single periodically polled resource.
+   */
+  public class Stream {
+
+    private final String name;
+    private final Policy policy;
+    private final Task task;
+
+    private ScheduledFuture<?> scheduled;
+    private boolean inFlight;
+    private boolean stopped;
+    private long interval;
+    private int consecutiveErrors;
+    private long requestCount;
+    private long errorCount;
+
+    Stream(String name, Policy policy, Task task) {
+      this.name = name;
+      this.policy = policy;
+      this.task = task;
+      this.interval = policy.minInterval;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return delay between the last poll and the next one, including error backoff
+     */
+    public synchronized long getEffectiveInterval() {
+      return consecutiveErrors > 0 ? backoff() : interval;
+    }
+
+    public synchronized long getRequestCount() {
+      return requestCount;
+    }
+
+    public synchronized long getErrorCount() {
+      return errorCount;
+    }
+
+    /**
+     * Polls stream now, unless poll is already in flight.
+     */
+    public synchronized void refresh() {
+      scheduleNow();
+    }
+
+    /**
+     * Stops polling. Poll that is already in flight is not interrupted, but its result is ignored.
+     */
+    public synchronized void stop() {
+      stopped = true;
+      cancelScheduled();
+      streams.remove(this);
+    }
+
+    synchronized void scheduleNow() {
+      if (!inFlight) {
+        schedule(0);
+      }
+    }
+
+    synchronized void cancelScheduled() {
+      if (scheduled != null) {
+        scheduled.cancel(false);
+        scheduled = null;
+      }
+    }
+
+    private synchronized void schedule(long delay) {
+      if (stopped || !networkAvailable) {
+        return;
+      }
+      cancelScheduled();
+      scheduled = scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          poll();
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+      synchronized (this) {
+        if (stopped || inFlight || !networkAvailable) {
+          return;
+        }
+        scheduled = null;
+        inFlight = true;
+        requestCount++;
+      }
+      ListenableFuture<Boolean> future;
+      try {
+        future = task.poll();
+      } catch (RuntimeException e) {
+        future = Futures.immediateFailedFuture(e);
+      }
+      Futures.addCallback(future, new FutureCallback<Boolean>() {
+        @Override
+        public void onSuccess(Boolean changed) {
+          onPolled(Boolean.TRUE.equals(changed));
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          onPollFailed();
+        }
+      }, MoreExecutors.directExecutor());
+    }
+
+    private synchronized void onPolled(boolean changed) {
+      inFlight = false;
+      consecutiveErrors = 0;
+      if (changed) {
+        interval = policy.minInterval;
+      } else {
+        interval = Math.min(policy.maxInterval, (long) (interval * SLOWDOWN_FACTOR));
+      }
+      schedule(interval);
+    }
+
+    private synchronized void onPollFailed() {
+      inFlight = false;
+      errorCount++;
+      consecutiveErrors++;
+      schedule(withJitter(backoff()));
+    }
+
+    private long backoff() {
+      long backoff = policy.minInterval << Math.min(consecutiveErrors, 16);
+      return Math.min(policy.maxBackoff, backoff);
+    }
+  }
+}
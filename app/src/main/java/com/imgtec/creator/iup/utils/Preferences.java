@@ -95,6 +95,18 @@ public class Preferences {
     return sharedPreferences.getString(USER_NAME, "");
   }
 
+  /**
+   * Saves whole session with a single commit.
+   */
+  public void saveSession(SessionStore.Session session) {
+    SharedPreferences.Editor editor = sharedPreferences.edit();
+    editor.putString(DS_ACCESS_TOKEN, session.getAccessToken());
+    editor.putLong(DS_ACCESS_TOKEN_EXPIRY_TIME, session.getAccessTokenExpiryTime());
+    editor.putString(DS_REFRESH_TOKEN, session.getRefreshToken());
+    editor.putString(USER_NAME, session.getUserName());
+    editor.apply();
+  }
+
   public void setAccessToken(String token) {
     SharedPreferences.Editor editor = sharedPreferences.edit();
     editor.putString(DS_ACCESS_TOKEN, token);
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Ties asynchronous requests to lifecycle of a screen. Futures registered in scope are cancelled by
+ * {@link #cancelAll()}, which for futures returned by {@link com.imgtec.creator.iup.ds.DSService} also
+ * cancels underlying http calls. Callbacks are delivered on UI thread and never after the scope was
+ * cancelled, so they do not touch detached views.
+ *
+ * Scope can be used again after it was cancelled.
+ */
+public class RequestScope {
+
+  private final Set<ListenableFuture<?>> futures =
+      Collections.newSetFromMap(new ConcurrentHashMap<ListenableFuture<?>, Boolean>());
+  private final Executor uiExecutor;
+  private volatile int generation;
+
+  public RequestScope() {
+    final Handler handler = new Handler(Looper.getMainLooper());
+    uiExecutor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        handler.post(command);
+      }
+    };
+  }
+
+  /**
+   * @param uiExecutor executor delivering callbacks instead of UI thread
+   */
+  @VisibleForTesting
+  public RequestScope(Executor uiExecutor) {
+    this.uiExecutor = uiExecutor;
+  }
+
+  /**
+   * Registers future in this scope, it will be cancelled by {@link #cancelAll()} if it is still running.
+   */
+  public <T> ListenableFuture<T> track(final ListenableFuture<T> future) {
+    futures.add(future);
+    future.addListener(new Runnable() {
+      @Override
+      public void run() {
+        futures.remove(future);
+      }
+    }, MoreExecutors.directExecutor());
+    return future;
+  }
+
+  /**
+   * Registers future in this scope and delivers its result to callback on UI thread. Callback is not
+   * called when the scope is cancelled before result is delivered.
+   */
+  public <T> void addCallback(ListenableFuture<T> future, final FutureCallback<? super T> callback) {
+    final int callbackGeneration = generation;
+    Futures.addCallback(track(future), new FutureCallback<T>() {
+      @Override
+      public void onSuccess(T result) {
+        if (callbackGeneration == generation) {
+          callback.onSuccess(result);
+        }
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        if (callbackGeneration == generation) {
+          callback.onFailure(t);
+        }
+      }
+    }, uiExecutor);
+  }
+
+  /**
+   * Cancels all registered futures which are still running and drops their pending callbacks.
+   * Must be called on UI thread.
+   */
+  public void cancelAll() {
+    generation++;
+    for (ListenableFuture<?> future : futures) {
+      future.cancel(true);
+    }
+    futures.clear();
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.utils;
+
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps Device Server session (access token, its expiry time, refresh token and user name) in memory,
+ * so request path never has to touch {@link android.content.SharedPreferences}. Session is loaded from
+ * {@link Preferences} once and every change is persisted in background by a single batched write;
+ * changes done before the write happens are coalesced into it.
+ *
+ * This class is thread safe.
+ */
+public class SessionStore {
+
+  /**
+   * Immutable snapshot of session state.
+   */
+  public static final class Session {
+
+    static final Session EMPTY = new Session("", 0, "", "");
+
+    private final String accessToken;
+    private final long accessTokenExpiryTime;
+    private final String refreshToken;
+    private final String userName;
+
+    Session(String accessToken, long accessTokenExpiryTime, String refreshToken, String userName) {
+      this.accessToken = accessToken;
+      this.accessTokenExpiryTime = accessTokenExpiryTime;
+      this.refreshToken = refreshToken;
+      this.userName = userName;
+    }
+
+    public String getAccessToken() {
+      return accessToken;
+    }
+
+    public long getAccessTokenExpiryTime() {
+      return accessTokenExpiryTime;
+    }
+
+    public String getRefreshToken() {
+      return refreshToken;
+    }
+
+    public String getUserName() {
+      return userName;
+    }
+  }
+
+  private final Preferences preferences;
+  private final ExecutorService writer;
+  private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+  private volatile Session session;
+
+  /**
+   * @param writer executor persisting session changes, must run tasks sequentially
+   */
+  public SessionStore(Preferences preferences, ExecutorService writer) {
+    this.preferences = preferences;
+    this.writer = writer;
+    session = new Session(preferences.getAccessToken(), preferences.getAccessTokenExpiryTime(),
+        preferences.getRefreshToken(), preferences.getUserName());
+  }
+
+  /**
+   * @return consistent snapshot of current session
+   */
+  public Session getSession() {
+    return session;
+  }
+
+  public synchronized void setToken(String accessToken, long accessTokenExpiryTime, String refreshToken) {
+    session = new Session(accessToken, accessTokenExpiryTime, refreshToken, session.getUserName());
+    scheduleWrite();
+  }
+
+  public synchronized void clearToken() {
+    session = new Session("", 0, "", session.getUserName());
+    scheduleWrite();
+  }
+
+  public synchronized void setUserName(String userName) {
+    session = new Session(session.getAccessToken(), session.getAccessTokenExpiryTime(),
+        session.getRefreshToken(), userName);
+    scheduleWrite();
+  }
+
+  private void scheduleWrite() {
+    if (!writeScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    writer.execute(new Runnable() {
+      @Override
+      public void run() {
+        writeScheduled.set(false);
+        preferences.saveSession(session);
+      }
+    });
+  }
+}
@@ -39,6 +39,7 @@ import com.imgtec.creator.iup.fragments.menu.AboutFragment;
 import com.imgtec.creator.iup.fragments.menu.ConnectedDevicesFragment;
 import com.imgtec.creator.iup.fragments.menu.CreatorDeviceInfoFragment;
 import com.imgtec.creator.iup.fragments.menu.DeviceInfoFragment;
+import com.imgtec.creator.iup.fragments.menu.DiagnosticsFragment;
 import com.imgtec.creator.iup.fragments.menu.InteractiveFragment;
 import com.imgtec.creator.iup.fragments.menu.setupguide.ConnectingFragment;
 import com.imgtec.creator.iup.fragments.menu.setupguide.FetchCertificateFragment;
@@ -98,6 +99,9 @@ public class SimpleFragmentFactory {
       case FetchCertificateFragment.TAG:
         fragment = FetchCertificateFragment.newInstance();
         break;
+      case DiagnosticsFragment.TAG:
+        fragment = DiagnosticsFragment.newInstance();
+        break;
       default:
         LOGGER.debug("Wrong fragment instantiated");
         fragment = ConnectedDevicesFragment.newInstance();
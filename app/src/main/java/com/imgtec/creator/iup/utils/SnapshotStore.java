@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.utils;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
+
+/**
+ * Small persistent key-value store for data that should be displayed before it is downloaded again
+ * (e.g. last known list of devices). Values live in memory, every change is appended to a binary log
+ * file in background and the log is compacted when it grows to twice the size of live data.
+ *
+ * Record format: op (1 byte), crc32 of the rest of the record (4 bytes), key length (2 bytes),
+ * key (UTF-8), value length (4 bytes), value. Log is read once, on first access; reading stops at
+ * first damaged record, so a write torn by process death only loses that record.
+ *
+ * This class is thread safe. Returned arrays must not be modified.
+ */
+public class SnapshotStore {
+
+  private static final int MAGIC = 0x534e5031;
+  private static final byte OP_PUT = 1;
+  private static final byte OP_REMOVE = 2;
+  private static final int HEADER_SIZE = 4;
+  private static final int RECORD_OVERHEAD = 1 + 4 + 2 + 4;
+  private static final long COMPACT_MIN_SIZE = 16 * 1024;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotStore.class);
+
+  private final File file;
+  private final ExecutorService writer;
+  private final Map<String, byte[]> values = new HashMap<>();
+  private boolean loaded;
+  /**
+   * Length of valid part of the log, accessed only by writer after load.
+   */
+  private long logSize;
+  private FileChannel channel;
+
+  /**
+   * @param writer executor appending to the log, must run tasks sequentially
+   */
+  public SnapshotStore(File file, ExecutorService writer) {
+    this.file = file;
+    this.writer = writer;
+  }
+
+  /**
+   * Reads the log on writer thread, so that first {@link #get(String)} does not have to, e.g. when called
+   * on UI thread.
+   */
+  public void preload() {
+    writer.execute(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (SnapshotStore.this) {
+          ensureLoaded();
+        }
+      }
+    });
+  }
+
+  /**
+   * @return value stored under key or null
+   */
+  public synchronized byte[] get(String key) {
+    ensureLoaded();
+    return values.get(key);
+  }
+
+  public void put(final String key, final byte[] value) {
+    synchronized (this) {
+      ensureLoaded();
+      if (Arrays.equals(values.get(key), value)) {
+        return;
+      }
+      values.put(key, value);
+    }
+    append(OP_PUT, key, value);
+  }
+
+  public void remove(final String key) {
+    synchronized (this) {
+      ensureLoaded();
+      if (values.remove(key) == null) {
+        return;
+      }
+    }
+    append(OP_REMOVE, key, new byte[0]);
+  }
+
+  /**
+   * Removes all values.
+   */
+  public void clear() {
+    synchronized (this) {
+      ensureLoaded();
+      values.clear();
+    }
+    writer.execute(new Runnable() {
+      @Override
+      public void run() {
+        compact();
+      }
+    });
+  }
+
+  private void append(final byte op, final String key, final byte[] value) {
+    writer.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          FileChannel channel = openChannel();
+          ByteBuffer record = encode(op, key, value);
+          channel.position(logSize);
+          while (record.hasRemaining()) {
+            channel.write(record);
+          }
+          logSize = channel.position();
+        } catch (IOException e) {
+          LOGGER.warn("Could not append to {}", file, e);
+          closeChannel();
+          return;
+        }
+        if (logSize > COMPACT_MIN_SIZE && logSize > 2 * liveSize()) {
+          compact();
+        }
+      }
+    });
+  }
+
+  /**
+   * Rewrites log so it only contains live values. Runs on writer thread.
+   */
+  private void compact() {
+    Map<String, byte[]> copy;
+    synchronized (this) {
+      copy = new HashMap<>(values);
+    }
+    closeChannel();
+    File tmp = new File(file.getPath() + ".tmp");
+    try {
+      RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+      try {
+        FileChannel tmpChannel = out.getChannel();
+        tmpChannel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).flip();
+        tmpChannel.write(header);
+        for (Map.Entry<String, byte[]> entry : copy.entrySet()) {
+          ByteBuffer record = encode(OP_PUT, entry.getKey(), entry.getValue());
+          while (record.hasRemaining()) {
+            tmpChannel.write(record);
+          }
+        }
+        tmpChannel.force(false);
+      } finally {
+        out.close();
+      }
+      if (!tmp.renameTo(file)) {
+        throw new IOException("Could not rename " + tmp + " to " + file);
+      }
+      logSize = file.length();
+    } catch (IOException e) {
+      LOGGER.warn("Could not compact {}", file, e);
+      tmp.delete();
+    }
+  }
+
+  private long liveSize() {
+    long size = HEADER_SIZE;
+    synchronized (this) {
+      for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+        size += RECORD_OVERHEAD + entry.getKey().getBytes(UTF_8).length + entry.getValue().length;
+      }
+    }
+    return size;
+  }
+
+  private FileChannel openChannel() throws IOException {
+    if (channel == null) {
+      channel = new RandomAccessFile(file, "rw").getChannel();
+      if (logSize < HEADER_SIZE) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).flip();
+        channel.truncate(0);
+        channel.write(header, 0);
+        logSize = HEADER_SIZE;
+      } else if (channel.size() > logSize) {
+        // drop damaged tail found while loading
+        channel.truncate(logSize);
+      }
+    }
+    return channel;
+  }
+
+  private void closeChannel() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        LOGGER.warn("Could not close {}", file, e);
+      }
+      channel = null;
+    }
+  }
+
+  private void ensureLoaded() {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    if (!file.exists()) {
+      return;
+    }
+    try {
+      FileInputStream in = new FileInputStream(file);
+      try {
+        FileChannel channel = in.getChannel();
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+          // read whole log
+        }
+        buffer.flip();
+        logSize = decode(buffer, values);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Could not read {}", file, e);
+      values.clear();
+      logSize = 0;
+    }
+  }
+
+  /**
+   * Replays log into values.
+   * @return length of valid part of the log
+   */
+  private static long decode(ByteBuffer buffer, Map<String, byte[]> values) {
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+      return 0;
+    }
+    CRC32 crc = new CRC32();
+    while (buffer.remaining() >= RECORD_OVERHEAD) {
+      int start = buffer.position();
+      byte op = buffer.get();
+      int checksum = buffer.getInt();
+      int keyLength = buffer.getShort() & 0xffff;
+      if (buffer.remaining() < keyLength + 4) {
+        return start;
+      }
+      byte[] key = new byte[keyLength];
+      buffer.get(key);
+      int valueLength = buffer.getInt();
+      if (valueLength < 0 || buffer.remaining() < valueLength) {
+        return start;
+      }
+      byte[] value = new byte[valueLength];
+      buffer.get(value);
+      crc.reset();
+      crc.update(buffer.array(), start + 5, buffer.position() - start - 5);
+      crc.update(op);
+      if ((int) crc.getValue() != checksum) {
+        return start;
+      }
+      if (op == OP_PUT) {
+        values.put(new String(key, UTF_8), value);
+      } else if (op == OP_REMOVE) {
+        values.remove(new String(key, UTF_8));
+      } else {
+        return start;
+      }
+    }
+    return buffer.position();
+  }
+
+  private static ByteBuffer encode(byte op, String key, byte[] value) {
+    byte[] keyBytes = key.getBytes(UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_OVERHEAD + keyBytes.length + value.length);
+    buffer.put(op);
+    buffer.putInt(0);
+    buffer.putShort((short) keyBytes.length);
+    buffer.put(keyBytes);
+    buffer.putInt(value.length);
+    buffer.put(value);
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), 5, buffer.position() - 5);
+    crc.update(op);
+    buffer.putInt(1, (int) crc.getValue());
+    buffer.flip();
+    return buffer;
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.wifire;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.imgtec.creator.iup.ds.pojo.Client;
+import com.imgtec.creator.iup.ds.pojo.Link;
+import com.imgtec.creator.iup.utils.SnapshotStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Last known state of WiFire devices kept in {@link SnapshotStore}: list of devices, selected device
+ * and values displayed on interactive screen. Lets screens render immediately after start and
+ * reconcile once live data arrives.
+ */
+public class DeviceSnapshots {
+
+  private static final String DEVICES_KEY = "devices";
+  private static final String SELECTED_DEVICE_KEY = "selected";
+  private static final String VALUES_KEY_PREFIX = "values:";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DeviceSnapshots.class);
+
+  /**
+   * Values displayed on interactive screen.
+   */
+  public static class Values {
+
+    private final boolean[] leds;
+    private final boolean[] buttons;
+    private final float temperature;
+    private final float analogInput;
+
+    public Values(boolean[] leds, boolean[] buttons, float temperature, float analogInput) {
+      this.leds = leds;
+      this.buttons = buttons;
+      this.temperature = temperature;
+      this.analogInput = analogInput;
+    }
+
+    public boolean[] getLeds() {
+      return leds;
+    }
+
+    public boolean[] getButtons() {
+      return buttons;
+    }
+
+    public float getTemperature() {
+      return temperature;
+    }
+
+    public float getAnalogInput() {
+      return analogInput;
+    }
+  }
+
+  private final SnapshotStore store;
+  private final ListeningExecutorService executor;
+
+  /**
+   * @param executor decodes snapshots requested asynchronously
+   */
+  public DeviceSnapshots(SnapshotStore store, ListeningExecutorService executor) {
+    this.store = store;
+    this.executor = executor;
+  }
+
+  /**
+   * Asynchronous {@link #getDevices()}, for callers on UI thread.
+   */
+  public ListenableFuture<List<Client>> loadDevices() {
+    return executor.submit(new Callable<List<Client>>() {
+      @Override
+      public List<Client> call() {
+        return getDevices();
+      }
+    });
+  }
+
+  /**
+   * @return last known list of devices, empty when there is none
+   */
+  public List<Client> getDevices() {
+    byte[] data = store.get(DEVICES_KEY);
+    if (data == null) {
+      return Collections.emptyList();
+    }
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+      int count = in.readInt();
+      List<Client> clients = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        Client client = new Client();
+        client.setName(in.readUTF());
+        int linkCount = in.readShort();
+        List<Link> links = new ArrayList<>(linkCount);
+        for (int j = 0; j < linkCount; j++) {
+          Link link = new Link();
+          link.setRel(readNullable(in));
+          link.setHref(readNullable(in));
+          link.setType(readNullable(in));
+          links.add(link);
+        }
+        client.setLinks(links);
+        clients.add(client);
+      }
+      return clients;
+    } catch (IOException e) {
+      LOGGER.warn("Could not decode devices snapshot", e);
+      return Collections.emptyList();
+    }
+  }
+
+  public void putDevices(List<Client> clients) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(clients.size());
+      for (Client client : clients) {
+        out.writeUTF(client.getName());
+        List<Link> links = client.getLinks();
+        out.writeShort(links.size());
+        for (Link link : links) {
+          writeNullable(out, link.getRel());
+          writeNullable(out, link.getHref());
+          writeNullable(out, link.getType());
+        }
+      }
+      out.flush();
+      store.put(DEVICES_KEY, bytes.toByteArray());
+    } catch (IOException e) {
+      LOGGER.warn("Could not encode devices snapshot", e);
+    }
+  }
+
+  /**
+   * @return name of last selected device or null
+   */
+  public String getSelectedDevice() {
+    byte[] data = store.get(SELECTED_DEVICE_KEY);
+    return data != null ? new String(data, UTF_8) : null;
+  }
+
+  public void putSelectedDevice(String name) {
+    store.put(SELECTED_DEVICE_KEY, name.getBytes(UTF_8));
+  }
+
+  /**
+   * @return last values displayed for device or null
+   */
+  public Values getValues(String deviceName) {
+    byte[] data = store.get(VALUES_KEY_PREFIX + deviceName);
+    if (data == null) {
+      return null;
+    }
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+      boolean[] leds = new boolean[in.readByte()];
+      for (int i = 0; i < leds.length; i++) {
+        leds[i] = in.readBoolean();
+      }
+      boolean[] buttons = new boolean[in.readByte()];
+      for (int i = 0; i < buttons.length; i++) {
+        buttons[i] = in.readBoolean();
+      }
+      return new Values(leds, buttons, in.readFloat(), in.readFloat());
+    } catch (IOException e) {
+      LOGGER.warn("Could not decode values snapshot", e);
+      return null;
+    }
+  }
+
+  public void putValues(String deviceName, Values values) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeByte(values.getLeds().length);
+      for (boolean led : values.getLeds()) {
+        out.writeBoolean(led);
+      }
+      out.writeByte(values.getButtons().length);
+      for (boolean button : values.getButtons()) {
+        out.writeBoolean(button);
+      }
+      out.writeFloat(values.getTemperature());
+      out.writeFloat(values.getAnalogInput());
+      out.flush();
+      store.put(VALUES_KEY_PREFIX + deviceName, bytes.toByteArray());
+    } catch (IOException e) {
+      LOGGER.warn("Could not encode values snapshot", e);
+    }
+  }
+
+  /**
+   * Forgets everything, used when user logs out.
+   */
+  public void clear() {
+    store.clear();
+  }
+
+  private static String readNullable(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeNullable(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+}
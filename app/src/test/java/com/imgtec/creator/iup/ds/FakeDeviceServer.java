@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.imgtec.creator.iup.utils.InMemorySharedPreferences;
+import com.imgtec.creator.iup.utils.PollingScheduler;
+import com.imgtec.creator.iup.utils.Preferences;
+import com.imgtec.creator.iup.utils.SessionStore;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Minimal Device Server for {@link DSService} tests: root document, OAuth token endpoint with rotating
+ * refresh tokens, a single page of clients and instances of {@link #OBJECT_ID} of every client. Token
+ * endpoint can be made to fail or respond slowly and clients can be held, so the test controls when
+ * calls complete. Instances can be moved, so links to them become stale.
+ */
+class FakeDeviceServer extends Dispatcher {
+
+  static final String REFRESH_TOKEN = "refresh-0";
+  static final int OBJECT_ID = 3311;
+
+  private static final Pattern OBJECT_TYPES_PATH = Pattern.compile("/clients/\\d+/objecttypes");
+  private static final Pattern INSTANCES_PATH =
+      Pattern.compile("/clients/\\d+/objecttypes/" + OBJECT_ID + "/instances-(\\d+)");
+
+  private final MockWebServer server;
+  private final Set<String> accessTokens = Collections.synchronizedSet(new HashSet<String>());
+  private final Set<String> refreshTokens = Collections.synchronizedSet(new HashSet<String>());
+  private final AtomicInteger tokenCounter = new AtomicInteger();
+  private final AtomicInteger refreshRequests = new AtomicInteger();
+  private final AtomicInteger rejectedRefreshes = new AtomicInteger();
+  private final AtomicInteger clientsRequests = new AtomicInteger();
+  private final AtomicInteger instancesLocation = new AtomicInteger();
+  private volatile int tokenStatus = 200;
+  private volatile long tokenDelay;
+  private volatile CountDownLatch clientsHold;
+  private volatile CountDownLatch clientsRequested = new CountDownLatch(1);
+  private final CountDownLatch tokenRequested = new CountDownLatch(1);
+
+  FakeDeviceServer(MockWebServer server) {
+    this.server = server;
+    refreshTokens.add(REFRESH_TOKEN);
+    server.setDispatcher(this);
+  }
+
+  /**
+   * Creates service logged in with {@link #REFRESH_TOKEN} and access token that has already expired.
+   */
+  DSService createService(File cacheDir) {
+    return createService(cacheDir, createSessionStore());
+  }
+
+  DSService createService(File cacheDir, SessionStore sessionStore) {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    return new DSService(server.url("/").toString(), new Preferences(new InMemorySharedPreferences()), sessionStore,
+        new PollingScheduler(scheduler), cacheDir, MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor()),
+        scheduler);
+  }
+
+  /**
+   * Creates session with {@link #REFRESH_TOKEN} and access token that has already expired.
+   */
+  SessionStore createSessionStore() {
+    Preferences preferences = new Preferences(new InMemorySharedPreferences());
+    preferences.setAccessToken("expired");
+    preferences.setAccessTokenExpiry(0);
+    preferences.setRefreshToken(REFRESH_TOKEN);
+    return new SessionStore(preferences, MoreExecutors.newDirectExecutorService());
+  }
+
+  /**
+   * Makes token endpoint respond with specified status, e.g. 401 to reject refresh token.
+   */
+  void setTokenStatus(int status) {
+    tokenStatus = status;
+  }
+
+  void setTokenDelay(long delay, TimeUnit unit) {
+    tokenDelay = unit.toMillis(delay);
+  }
+
+  /**
+   * Makes requests for clients wait until {@link #releaseClients()} is called.
+   */
+  void holdClients() {
+    clientsRequested = new CountDownLatch(1);
+    clientsHold = new CountDownLatch(1);
+  }
+
+  void releaseClients() {
+    CountDownLatch hold = clientsHold;
+    if (hold != null) {
+      hold.countDown();
+    }
+  }
+
+  /**
+   * Waits for request for clients made after the last {@link #holdClients()}.
+   */
+  boolean awaitClientsRequest(long timeout, TimeUnit unit) throws InterruptedException {
+    return clientsRequested.await(timeout, unit);
+  }
+
+  boolean awaitTokenRequest(long timeout, TimeUnit unit) throws InterruptedException {
+    return tokenRequested.await(timeout, unit);
+  }
+
+  int getRefreshRequests() {
+    return refreshRequests.get();
+  }
+
+  /**
+   * @return number of refreshes made with refresh token that had already been used
+   */
+  int getRejectedRefreshes() {
+    return rejectedRefreshes.get();
+  }
+
+  int getClientsRequests() {
+    return clientsRequests.get();
+  }
+
+  /**
+   * Moves instances of every client to new location, old links to them respond with 404.
+   */
+  void moveInstances() {
+    instancesLocation.incrementAndGet();
+  }
+
+  @Override
+  public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+    String path = HttpUrl.parse("http://localhost" + request.getPath()).encodedPath();
+    String base = server.url("/").toString().replaceAll("/$", "");
+    if ("/".equals(path)) {
+      // like Device Server, root document lists collections only to authorized requests
+      JsonObject api = new JsonObject();
+      api.add("Links", isAuthorized(request)
+          ? links(link("authenticate", base + "/oauth/token"), link("clients", base + "/clients"))
+          : links(link("authenticate", base + "/oauth/token")));
+      return json(200, api);
+    }
+    if ("/oauth/token".equals(path)) {
+      return token(request.getBody().readUtf8());
+    }
+    if ("/clients".equals(path)) {
+      clientsRequests.incrementAndGet();
+      clientsRequested.countDown();
+      CountDownLatch hold = clientsHold;
+      if (hold != null) {
+        hold.await(10, TimeUnit.SECONDS);
+      }
+      if (!isAuthorized(request)) {
+        return new MockResponse().setResponseCode(401);
+      }
+      return json(200, clientsPage(base + "/clients"));
+    }
+    if (OBJECT_TYPES_PATH.matcher(path).matches()) {
+      if (!isAuthorized(request)) {
+        return new MockResponse().setResponseCode(401);
+      }
+      // served without caching headers, so freshness is assigned by DSService
+      return json(200, objectTypesPage(base + path));
+    }
+    Matcher instances = INSTANCES_PATH.matcher(path);
+    if (instances.matches() && Integer.parseInt(instances.group(1)) == instancesLocation.get()) {
+      if (!isAuthorized(request)) {
+        return new MockResponse().setResponseCode(401);
+      }
+      return json(200, page(new JsonArray(), base + path));
+    }
+    return new MockResponse().setResponseCode(404);
+  }
+
+  private boolean isAuthorized(RecordedRequest request) {
+    String authorization = request.getHeader("Authorization");
+    return authorization != null && accessTokens.contains(authorization.substring("Bearer ".length()));
+  }
+
+  private MockResponse token(String form) throws InterruptedException {
+    tokenRequested.countDown();
+    if (tokenDelay > 0) {
+      Thread.sleep(tokenDelay);
+    }
+    if (tokenStatus != 200) {
+      return new MockResponse().setResponseCode(tokenStatus);
+    }
+    if (form.contains("grant_type=refresh_token")) {
+      refreshRequests.incrementAndGet();
+      String refreshToken = form.replaceAll(".*refresh_token=([^&]*).*", "$1");
+      if (!refreshTokens.remove(refreshToken)) {
+        rejectedRefreshes.incrementAndGet();
+        return new MockResponse().setResponseCode(401);
+      }
+    }
+    int id = tokenCounter.incrementAndGet();
+    accessTokens.add("access-" + id);
+    refreshTokens.add("refresh-" + id);
+    JsonObject token = new JsonObject();
+    token.addProperty("access_token", "access-" + id);
+    token.addProperty("token_type", "Bearer");
+    token.addProperty("expires_in", 3600);
+    token.addProperty("refresh_token", "refresh-" + id);
+    return json(200, token);
+  }
+
+  private static JsonObject clientsPage(String href) {
+    JsonArray items = new JsonArray();
+    for (int i = 0; i < 3; i++) {
+      JsonObject client = new JsonObject();
+      client.addProperty("Name", "client-" + i);
+      client.add("Links", links(link("self", href + "/" + i), link("objecttypes", href + "/" + i + "/objecttypes")));
+      items.add(client);
+    }
+    return page(items, href);
+  }
+
+  private JsonObject objectTypesPage(String href) {
+    JsonObject objectType = new JsonObject();
+    objectType.addProperty("ObjectTypeID", Integer.toString(OBJECT_ID));
+    objectType.add("Links", links(link("instances", href + "/" + OBJECT_ID + "/instances-" + instancesLocation.get())));
+    JsonArray items = new JsonArray();
+    items.add(objectType);
+    return page(items, href);
+  }
+
+  private static JsonObject page(JsonArray items, String href) {
+    JsonObject pageInfo = new JsonObject();
+    pageInfo.addProperty("TotalCount", items.size());
+    pageInfo.addProperty("ItemsCount", items.size());
+    pageInfo.addProperty("StartIndex", 0);
+    JsonObject page = new JsonObject();
+    page.add("PageInfo", pageInfo);
+    page.add("Items", items);
+    page.add("Links", links(link("self", href)));
+    return page;
+  }
+
+  private static JsonArray links(JsonObject... links) {
+    JsonArray array = new JsonArray();
+    for (JsonObject link : links) {
+      array.add(link);
+    }
+    return array;
+  }
+
+  private static JsonObject link(String rel, String href) {
+    JsonObject link = new JsonObject();
+    link.addProperty("rel", rel);
+    link.addProperty("href", href);
+    return link;
+  }
+
+  private static MockResponse json(int code, JsonObject body) {
+    return new MockResponse()
+        .setResponseCode(code)
+        .setHeader("Content-Type", "application/json")
+        .setBody(body.toString());
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gson.reflect.TypeToken;
+import com.imgtec.creator.iup.ds.exceptions.DeviceServerException;
+import com.imgtec.creator.iup.ds.pojo.Client;
+import com.imgtec.creator.iup.ds.pojo.Instances;
+import com.imgtec.creator.iup.ds.pojo.LightControl;
+import com.imgtec.creator.iup.utils.RequestScope;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertTrue;
+
+public class NavigationThreadLeakTest {
+
+  private static final int NAVIGATIONS = 100;
+  private static final int WARM_UP_NAVIGATIONS = 5;
+  /**
+   * Threads that may come and go independently of navigation, e.g. connections of mock server.
+   */
+  private static final int TOLERATED_THREADS = 4;
+  private static final TypeToken<Instances<LightControl>> LIGHT_CONTROLS = new TypeToken<Instances<LightControl>>() {};
+
+  @Rule
+  public final MockWebServer server = new MockWebServer();
+
+  @Test
+  public void navigationDoesNotLeakThreads() throws Exception {
+    FakeDeviceServer deviceServer = new FakeDeviceServer(server);
+    DSService service = deviceServer.createService(null);
+    for (int i = 0; i < WARM_UP_NAVIGATIONS; i++) {
+      navigate(service, i);
+    }
+    int threadsBefore = Thread.activeCount();
+
+    for (int i = 0; i < NAVIGATIONS; i++) {
+      navigate(service, i);
+    }
+
+    int threadsAfter = Thread.activeCount();
+    assertTrue("threads before: " + threadsBefore + ", after: " + threadsAfter,
+        threadsAfter <= threadsBefore + TOLERATED_THREADS);
+  }
+
+  /**
+   * Opens screen that loads client, its instances and observes them, then leaves it. Every other
+   * screen is left before instances are loaded.
+   */
+  private static void navigate(DSService service, int navigation) throws Exception {
+    RequestScope scope = new RequestScope(MoreExecutors.directExecutor());
+    Client client = scope.track(service.getClient("client-0")).get(10, TimeUnit.SECONDS);
+    final CountDownLatch loaded = new CountDownLatch(1);
+    ListenableFuture<Instances<LightControl>> instances =
+        service.getInstances(client, FakeDeviceServer.OBJECT_ID, LIGHT_CONTROLS);
+    scope.addCallback(instances, new FutureCallback<Instances<LightControl>>() {
+      @Override
+      public void onSuccess(Instances<LightControl> result) {
+        loaded.countDown();
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        loaded.countDown();
+      }
+    });
+    Subscription subscription = service.observe(client, FakeDeviceServer.OBJECT_ID, LIGHT_CONTROLS)
+        .subscribe(new Observer<Instances<LightControl>>() {
+          @Override
+          public void onNext(Instances<LightControl> value) {
+          }
+
+          @Override
+          public void onError(DeviceServerException e) {
+          }
+        });
+    if (navigation % 2 == 0) {
+      loaded.await(10, TimeUnit.SECONDS);
+    }
+
+    // like onPause of a screen
+    scope.cancelAll();
+    subscription.unsubscribe();
+  }
+}
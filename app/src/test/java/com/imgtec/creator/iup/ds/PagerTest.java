@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.imgtec.creator.iup.ds.pojo.Client;
+import com.imgtec.creator.iup.ds.pojo.Clients;
+import com.imgtec.creator.iup.ds.pojo.PageInfo;
+import com.imgtec.creator.iup.ds.pojo.Paged;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PagerTest {
+
+  private final List<SettableFuture<Clients>> loads = new ArrayList<>();
+  private final Pager<Client> pager = new Pager<>(new Pager.Source<Client>() {
+    @Override
+    public ListenableFuture<? extends Paged<Client>> load(String href, int startIndex, int pageSize) {
+      SettableFuture<Clients> load = SettableFuture.create();
+      loads.add(load);
+      return load;
+    }
+  }, Pager.MIN_PAGE_SIZE);
+
+  @Test
+  public void cancelledPageIsNotFollowedByPrefetch() throws Exception {
+    ListenableFuture<List<Client>> page = pager.nextPage();
+
+    page.cancel(true);
+
+    assertTrue(loads.get(0).isCancelled());
+    assertEquals(1, loads.size());
+    assertNull(pager.nextPage().get());
+  }
+
+  @Test
+  public void cancelledConsumerCancelsPrefetch() throws Exception {
+    // consumer that needs more than the first page, e.g. search that has not found its client yet
+    ListenableFuture<List<Client>> consumer = Futures.transformAsync(pager.nextPage(),
+        new AsyncFunction<List<Client>, List<Client>>() {
+          @Override
+          public ListenableFuture<List<Client>> apply(List<Client> input) {
+            return SettableFuture.create();
+          }
+        });
+    pager.closeWhenDone(consumer);
+    loads.get(0).set(page(0, 100));
+    assertEquals(2, loads.size());
+
+    consumer.cancel(true);
+
+    assertTrue(loads.get(1).isCancelled());
+    assertEquals(2, loads.size());
+  }
+
+  @Test
+  public void completedConsumerCancelsPrefetch() throws Exception {
+    ListenableFuture<List<Client>> consumer = pager.nextPage();
+    pager.closeWhenDone(consumer);
+
+    loads.get(0).set(page(0, 100));
+
+    assertEquals(Pager.MIN_PAGE_SIZE, consumer.get().size());
+    assertTrue(loads.get(1).isCancelled());
+  }
+
+  private static Clients page(int startIndex, int totalCount) {
+    PageInfo pageInfo = new PageInfo();
+    pageInfo.setStartIndex(startIndex);
+    pageInfo.setItemsCount(Pager.MIN_PAGE_SIZE);
+    pageInfo.setTotalCount(totalCount);
+    Clients clients = new Clients();
+    clients.setPageInfo(pageInfo);
+    clients.setItems(new ArrayList<>(Collections.nCopies(Pager.MIN_PAGE_SIZE, new Client())));
+    return clients;
+  }
+}
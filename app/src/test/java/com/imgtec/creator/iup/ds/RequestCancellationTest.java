@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.imgtec.creator.iup.ds.PriorityDispatcher.RequestClass;
+import com.imgtec.creator.iup.ds.pojo.Clients;
+import com.imgtec.creator.iup.utils.RequestScope;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Screens cancel their requests through {@link RequestScope#cancelAll()} when paused.
+ */
+public class RequestCancellationTest {
+
+  @Rule
+  public final MockWebServer server = new MockWebServer();
+
+  private FakeDeviceServer deviceServer;
+  private DSService service;
+
+  @Before
+  public void setUp() throws Exception {
+    deviceServer = new FakeDeviceServer(server);
+    service = deviceServer.createService(null);
+    // log in and cache root document, so the next getClients makes single call
+    service.getClients(0, 10).get(10, TimeUnit.SECONDS);
+  }
+
+  @After
+  public void tearDown() {
+    deviceServer.releaseClients();
+  }
+
+  @Test
+  public void cancelledScopeCancelsInFlightCall() throws Exception {
+    deviceServer.holdClients();
+    RequestScope scope = new RequestScope(MoreExecutors.directExecutor());
+    ListenableFuture<Clients> clients = scope.track(service.getClients(0, 10));
+    assertTrue(deviceServer.awaitClientsRequest(10, TimeUnit.SECONDS));
+    assertEquals(1, runningCalls());
+
+    scope.cancelAll();
+
+    assertTrue(clients.isCancelled());
+    awaitNoRunningCalls();
+  }
+
+  @Test
+  public void callIsKeptWhileOtherScopeWaitsForIt() throws Exception {
+    deviceServer.holdClients();
+    RequestScope paused = new RequestScope(MoreExecutors.directExecutor());
+    RequestScope resumed = new RequestScope(MoreExecutors.directExecutor());
+    paused.track(service.getClients(0, 10));
+    ListenableFuture<Clients> clients = resumed.track(service.getClients(0, 10));
+    assertTrue(deviceServer.awaitClientsRequest(10, TimeUnit.SECONDS));
+
+    paused.cancelAll();
+    deviceServer.releaseClients();
+
+    assertEquals(3, clients.get(10, TimeUnit.SECONDS).getItems().size());
+    assertEquals(2, deviceServer.getClientsRequests());
+    awaitNoRunningCalls();
+  }
+
+  private int runningCalls() {
+    int running = 0;
+    for (RequestClass requestClass : RequestClass.values()) {
+      running += service.getPriorityDispatcher().getRunningCount(requestClass);
+    }
+    return running;
+  }
+
+  /**
+   * Cancelled OkHttp call reports its failure asynchronously.
+   */
+  private void awaitNoRunningCalls() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (runningCalls() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, runningCalls());
+  }
+}
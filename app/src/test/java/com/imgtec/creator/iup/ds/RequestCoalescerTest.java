@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestCoalescerTest {
+
+  private final RequestCoalescer coalescer = new RequestCoalescer();
+
+  @Test
+  public void singleCallerCancelsCall() {
+    StartedCall call = new StartedCall();
+
+    ListenableFuture<String> future = coalescer.executeAsync("key", call);
+    future.cancel(true);
+
+    assertTrue(call.future.isCancelled());
+  }
+
+  @Test
+  public void callIsCancelledByLastWaiter() throws Exception {
+    StartedCall call = new StartedCall();
+    ListenableFuture<String> first = coalescer.executeAsync("key", call);
+    ListenableFuture<String> second = coalescer.executeAsync("key", new StartedCall());
+
+    first.cancel(true);
+
+    assertFalse(call.future.isCancelled());
+    call.future.set("result");
+    assertEquals("result", second.get(1, TimeUnit.SECONDS));
+    assertEquals(1, coalescer.getAbsorbedCount());
+
+    StartedCall next = new StartedCall();
+    ListenableFuture<String> third = coalescer.executeAsync("key", next);
+    ListenableFuture<String> fourth = coalescer.executeAsync("key", new StartedCall());
+    third.cancel(true);
+    fourth.cancel(true);
+
+    assertTrue(next.future.isCancelled());
+  }
+
+  @Test
+  public void callerAfterCancellationStartsNewCall() throws Exception {
+    StartedCall cancelled = new StartedCall();
+    coalescer.executeAsync("key", cancelled).cancel(true);
+
+    StartedCall call = new StartedCall();
+    ListenableFuture<String> future = coalescer.executeAsync("key", call);
+    call.future.set("result");
+
+    assertTrue(cancelled.future.isCancelled());
+    assertEquals("result", future.get(1, TimeUnit.SECONDS));
+  }
+
+  private static class StartedCall implements RequestCoalescer.AsyncCall<String> {
+    final SettableFuture<String> future = SettableFuture.create();
+
+    @Override
+    public ListenableFuture<String> start() {
+      return future;
+    }
+  }
+}
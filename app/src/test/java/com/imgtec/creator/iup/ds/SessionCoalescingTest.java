@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.imgtec.creator.iup.ds.pojo.Clients;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SessionCoalescingTest {
+
+  @Rule
+  public final MockWebServer server = new MockWebServer();
+
+  @Test
+  public void callOfPreviousSessionIsNotJoined() throws Exception {
+    FakeDeviceServer deviceServer = new FakeDeviceServer(server);
+    DSService service = deviceServer.createService(null);
+    deviceServer.holdClients();
+    ListenableFuture<Clients> previous = service.getClients(0, 10);
+    assertTrue(deviceServer.awaitClientsRequest(10, TimeUnit.SECONDS));
+
+    service.login().get(10, TimeUnit.SECONDS);
+    ListenableFuture<Clients> current = service.getClients(0, 10);
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (deviceServer.getClientsRequests() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    deviceServer.releaseClients();
+    assertEquals(2, deviceServer.getClientsRequests());
+    assertEquals(3, current.get(10, TimeUnit.SECONDS).getItems().size());
+    previous.get(10, TimeUnit.SECONDS);
+  }
+}
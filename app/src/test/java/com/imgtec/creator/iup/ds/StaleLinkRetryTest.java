@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.gson.reflect.TypeToken;
+import com.imgtec.creator.iup.ds.pojo.Client;
+import com.imgtec.creator.iup.ds.pojo.Instances;
+import com.imgtec.creator.iup.ds.pojo.LightControl;
+import com.imgtec.creator.iup.utils.SessionStore;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertNotNull;
+
+public class StaleLinkRetryTest {
+
+  private static final TypeToken<Instances<LightControl>> LIGHT_CONTROLS = new TypeToken<Instances<LightControl>>() {};
+
+  @Rule
+  public final MockWebServer server = new MockWebServer();
+  @Rule
+  public final TemporaryFolder cacheDir = new TemporaryFolder();
+
+  @Test
+  public void movedInstancesAreFoundDespiteHttpCache() throws Exception {
+    FakeDeviceServer deviceServer = new FakeDeviceServer(server);
+    DSService service = deviceServer.createService(cacheDir.getRoot());
+    Client client = service.getClient("client-0").get(10, TimeUnit.SECONDS);
+    service.getInstances(client, FakeDeviceServer.OBJECT_ID, LIGHT_CONTROLS).get(10, TimeUnit.SECONDS);
+
+    deviceServer.moveInstances();
+
+    // object types listing old link are still fresh in HTTP cache, retry must download them again
+    assertNotNull(service.getInstances(client, FakeDeviceServer.OBJECT_ID, LIGHT_CONTROLS).get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void movedInstancesAreFoundAfterRestart() throws Exception {
+    FakeDeviceServer deviceServer = new FakeDeviceServer(server);
+    SessionStore sessionStore = deviceServer.createSessionStore();
+    DSService service = deviceServer.createService(cacheDir.getRoot(), sessionStore);
+    Client client = service.getClient("client-0").get(10, TimeUnit.SECONDS);
+    service.getInstances(client, FakeDeviceServer.OBJECT_ID, LIGHT_CONTROLS).get(10, TimeUnit.SECONDS);
+
+    deviceServer.moveInstances();
+
+    // new service starts with empty link cache, but stale object types are still in HTTP cache
+    DSService restarted = deviceServer.createService(cacheDir.getRoot(), sessionStore);
+    assertNotNull(restarted.getInstances(client, FakeDeviceServer.OBJECT_ID, LIGHT_CONTROLS).get(10, TimeUnit.SECONDS));
+  }
+}
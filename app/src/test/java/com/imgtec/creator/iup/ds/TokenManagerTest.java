@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.imgtec.creator.iup.ds.pojo.OauthToken;
+import com.imgtec.creator.iup.utils.InMemorySharedPreferences;
+import com.imgtec.creator.iup.utils.Preferences;
+import com.imgtec.creator.iup.utils.SessionStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TokenManagerTest {
+
+  private final ExecutorService caller = Executors.newSingleThreadExecutor();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private final AtomicInteger refreshes = new AtomicInteger();
+  private final CountDownLatch refreshStarted = new CountDownLatch(1);
+  private volatile CountDownLatch refreshHold;
+  private DelayingSessionStore sessionStore;
+  private TokenManager tokenManager;
+
+  @Before
+  public void setUp() {
+    Preferences preferences = new Preferences(new InMemorySharedPreferences());
+    preferences.setAccessToken("expired");
+    preferences.setAccessTokenExpiry(0);
+    sessionStore = new DelayingSessionStore(preferences);
+    tokenManager = new TokenManager(sessionStore, new TokenManager.Refresher() {
+      @Override
+      public OauthToken refresh(String refreshToken) {
+        refreshStarted.countDown();
+        CountDownLatch hold = refreshHold;
+        if (hold != null) {
+          await(hold);
+        }
+        return token("refreshed-" + refreshes.incrementAndGet());
+      }
+    }, scheduler, MoreExecutors.directExecutor());
+  }
+
+  @After
+  public void tearDown() {
+    caller.shutdownNow();
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void lateCallerReusesRefreshedToken() throws Exception {
+    // late caller sees expired token, but asks for refresh only after another caller has refreshed it
+    Future<String> late = caller.submit(new Callable<String>() {
+      @Override
+      public String call() {
+        sessionStore.delayNextRead();
+        return tokenManager.getAccessToken();
+      }
+    });
+    sessionStore.awaitDelayedRead();
+
+    assertEquals("refreshed-1", tokenManager.getAccessToken());
+    sessionStore.releaseDelayedRead();
+
+    assertEquals("refreshed-1", late.get(10, TimeUnit.SECONDS));
+    assertEquals(1, refreshes.get());
+  }
+
+  @Test
+  public void storedExpiredTokenIsNotRefreshedOnStart() throws Exception {
+    Preferences preferences = new Preferences(new InMemorySharedPreferences());
+    preferences.setAccessToken("expired");
+    preferences.setAccessTokenExpiry(0);
+    preferences.setRefreshToken("stored-refresh");
+    final AtomicInteger startRefreshes = new AtomicInteger();
+    new TokenManager(new SessionStore(preferences, MoreExecutors.newDirectExecutorService()),
+        new TokenManager.Refresher() {
+          @Override
+          public OauthToken refresh(String refreshToken) {
+            startRefreshes.incrementAndGet();
+            return token("refreshed");
+          }
+        }, scheduler, MoreExecutors.directExecutor());
+
+    // auto login spends stored refresh token, proactive refresh must not race it
+    Thread.sleep(200);
+
+    assertEquals(0, startRefreshes.get());
+    assertEquals("stored-refresh", preferences.getRefreshToken());
+  }
+
+  @Test
+  public void refreshDoesNotOverwriteLogin() throws Exception {
+    refreshHold = new CountDownLatch(1);
+    Future<String> refreshed = caller.submit(new Callable<String>() {
+      @Override
+      public String call() {
+        return tokenManager.getAccessToken();
+      }
+    });
+    assertTrue(refreshStarted.await(10, TimeUnit.SECONDS));
+
+    tokenManager.setToken(token("login"));
+    refreshHold.countDown();
+
+    assertEquals("login", refreshed.get(10, TimeUnit.SECONDS));
+    assertEquals("login", sessionStore.getSession().getAccessToken());
+    assertEquals("login-refresh", sessionStore.getSession().getRefreshToken());
+  }
+
+  private static OauthToken token(String accessToken) {
+    OauthToken token = new OauthToken();
+    token.setAccessToken(accessToken);
+    token.setRefreshToken(accessToken + "-refresh");
+    token.setExpiresIn(3600);
+    return token;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Lets a thread read the session and hold the snapshot until released, as if it was preempted.
+   */
+  private static class DelayingSessionStore extends SessionStore {
+    private final ThreadLocal<Boolean> delayRead = new ThreadLocal<>();
+    private final CountDownLatch delayedRead = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    DelayingSessionStore(Preferences preferences) {
+      super(preferences, MoreExecutors.newDirectExecutorService());
+    }
+
+    void delayNextRead() {
+      delayRead.set(true);
+    }
+
+    void awaitDelayedRead() {
+      TokenManagerTest.await(delayedRead);
+    }
+
+    void releaseDelayedRead() {
+      release.countDown();
+    }
+
+    @Override
+    public Session getSession() {
+      Session session = super.getSession();
+      if (delayRead.get() != null) {
+        delayRead.remove();
+        delayedRead.countDown();
+        TokenManagerTest.await(release);
+      }
+      return session;
+    }
+  }
+}
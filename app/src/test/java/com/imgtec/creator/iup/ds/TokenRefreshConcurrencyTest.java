@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.imgtec.creator.iup.ds.exceptions.UnauthorizedException;
+import com.imgtec.creator.iup.ds.pojo.Clients;
+import com.imgtec.creator.iup.utils.SessionStore;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TokenRefreshConcurrencyTest {
+
+  private static final int CALLERS = 32;
+  private static final int ROUNDS = 10;
+
+  @Rule
+  public final MockWebServer server = new MockWebServer();
+
+  @Test
+  public void concurrentCallersRefreshOnce() throws Exception {
+    ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+    try {
+      for (int round = 0; round < ROUNDS; round++) {
+        FakeDeviceServer deviceServer = new FakeDeviceServer(server);
+        deviceServer.setTokenDelay(20, TimeUnit.MILLISECONDS);
+        final DSService service = deviceServer.createService(null);
+        final CyclicBarrier start = new CyclicBarrier(CALLERS);
+        List<Future<Clients>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+          final int startIndex = i;
+          results.add(callers.submit(new Callable<Clients>() {
+            @Override
+            public Clients call() throws Exception {
+              start.await();
+              // distinct pages, so requests are not coalesced before they reach the token
+              return service.getClients(startIndex, 10).get(10, TimeUnit.SECONDS);
+            }
+          }));
+        }
+        for (Future<Clients> result : results) {
+          assertEquals(3, result.get(10, TimeUnit.SECONDS).getItems().size());
+        }
+
+        assertEquals("round " + round, 1, deviceServer.getRefreshRequests());
+        assertEquals("round " + round, 0, deviceServer.getRejectedRefreshes());
+      }
+    } finally {
+      callers.shutdownNow();
+    }
+  }
+
+  @Test
+  public void refreshCompletedAfterLogoutIsDropped() throws Exception {
+    FakeDeviceServer deviceServer = new FakeDeviceServer(server);
+    deviceServer.setTokenDelay(500, TimeUnit.MILLISECONDS);
+    SessionStore sessionStore = deviceServer.createSessionStore();
+    DSService service = deviceServer.createService(null, sessionStore);
+    ListenableFuture<Clients> clients = service.getClients(0, 10);
+    assertTrue(deviceServer.awaitTokenRequest(10, TimeUnit.SECONDS));
+
+    service.logout();
+
+    try {
+      clients.get(10, TimeUnit.SECONDS);
+      fail("Expected request of logged out session to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause().toString(), e.getCause() instanceof UnauthorizedException);
+    }
+    assertEquals(1, deviceServer.getRefreshRequests());
+    assertEquals("", sessionStore.getSession().getRefreshToken());
+    assertEquals("", sessionStore.getSession().getAccessToken());
+  }
+}
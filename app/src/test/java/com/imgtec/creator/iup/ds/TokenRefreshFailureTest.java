@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.imgtec.creator.iup.ds.PriorityDispatcher.RequestClass;
+import com.imgtec.creator.iup.ds.exceptions.UnauthorizedException;
+import com.imgtec.creator.iup.ds.pojo.Clients;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TokenRefreshFailureTest {
+
+  @Rule
+  public final MockWebServer server = new MockWebServer();
+
+  private FakeDeviceServer deviceServer;
+  private DSService service;
+
+  @Before
+  public void setUp() {
+    deviceServer = new FakeDeviceServer(server);
+    deviceServer.setTokenStatus(401);
+    service = deviceServer.createService(null);
+  }
+
+  @Test
+  public void failedRefreshFailsFuture() throws Exception {
+    ListenableFuture<Clients> clients = service.getClients(0, 10);
+
+    try {
+      clients.get(10, TimeUnit.SECONDS);
+      fail("Expected refresh failure");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause().toString(), e.getCause() instanceof UnauthorizedException);
+    }
+    assertNoRunningCalls();
+  }
+
+  @Test
+  public void failedRefreshesDoNotWedgeDispatcher() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      try {
+        service.getClients(0, 10).get(10, TimeUnit.SECONDS);
+        fail("Expected refresh failure");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause().toString(), e.getCause() instanceof UnauthorizedException);
+      }
+    }
+    assertNoRunningCalls();
+
+    deviceServer.setTokenStatus(200);
+    Clients clients = service.getClients(0, 10).get(10, TimeUnit.SECONDS);
+
+    assertEquals(3, clients.getItems().size());
+    assertNoRunningCalls();
+  }
+
+  private void assertNoRunningCalls() {
+    for (RequestClass requestClass : RequestClass.values()) {
+      assertEquals(requestClass.name(), 0, service.getPriorityDispatcher().getRunningCount(requestClass));
+    }
+  }
+}
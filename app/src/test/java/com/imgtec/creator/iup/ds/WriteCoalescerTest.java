@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.imgtec.creator.iup.ds.exceptions.DeviceServerException;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteCoalescerTest {
+
+  private final List<Boolean> written = new ArrayList<>();
+  private final List<SettableFuture<Void>> writes = new ArrayList<>();
+  private final List<Boolean> committed = new ArrayList<>();
+  private final WriteCoalescer<Integer, Boolean> coalescer = new WriteCoalescer<>(
+      new WriteCoalescer.Writer<Integer, Boolean>() {
+        @Override
+        public ListenableFuture<?> write(Integer key, Boolean value) {
+          SettableFuture<Void> write = SettableFuture.create();
+          written.add(value);
+          writes.add(write);
+          return write;
+        }
+      },
+      new WriteCoalescer.Listener<Integer, Boolean>() {
+        @Override
+        public void onCommitted(Integer key, Boolean value) {
+          committed.add(value);
+        }
+
+        @Override
+        public void onFailed(Integer key, Boolean confirmed, DeviceServerException e) {
+        }
+      });
+
+  @Test
+  public void clearDropsValueNotWrittenYet() {
+    coalescer.submit(0, true, false);
+    coalescer.submit(0, false, true);
+
+    coalescer.clear();
+    writes.get(0).set(null);
+
+    assertEquals(1, written.size());
+    assertEquals(true, committed.get(0));
+    assertFalse(coalescer.isPending(0));
+  }
+
+  @Test
+  public void writeAfterClearWaitsForWriteInFlight() {
+    coalescer.submit(0, true, false);
+    coalescer.clear();
+    assertTrue(coalescer.isPending(0));
+
+    coalescer.submit(0, false, true);
+    assertEquals(1, written.size());
+
+    writes.get(0).set(null);
+    assertEquals(2, written.size());
+    assertEquals(false, written.get(1));
+
+    writes.get(1).set(null);
+    assertEquals(1, committed.size());
+    assertEquals(false, committed.get(0));
+    assertFalse(coalescer.isPending(0));
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.imgtec.creator.iup.wifire;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.imgtec.creator.iup.ds.pojo.Client;
+import com.imgtec.creator.iup.ds.pojo.Link;
+import com.imgtec.creator.iup.utils.SnapshotStore;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeviceSnapshotsTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private File file;
+
+  @Before
+  public void setUp() {
+    file = new File(folder.getRoot(), "snapshots.bin");
+  }
+
+  @Test
+  public void devicesAreLoadedAfterRestart() throws Exception {
+    Link link = new Link();
+    link.setRel("self");
+    link.setHref("https://deviceserver/clients/1");
+    Client client = new Client();
+    client.setName("WiFire 1");
+    client.setLinks(Collections.singletonList(link));
+    open().putDevices(Collections.singletonList(client));
+
+    List<Client> devices = open().loadDevices().get(10, TimeUnit.SECONDS);
+
+    assertEquals(1, devices.size());
+    assertEquals("WiFire 1", devices.get(0).getName());
+    assertEquals("https://deviceserver/clients/1", devices.get(0).getLinkByRel("self").getHref());
+  }
+
+  @Test
+  public void selectedDeviceIsStoredAsUtf8() {
+    String name = "WiFire \u0142\u00f3d\u017a \u6e29\u5ea6";
+    open().putSelectedDevice(name);
+
+    assertEquals(name, open().getSelectedDevice());
+  }
+
+  /**
+   * Opens snapshots the way the application does after start.
+   */
+  private DeviceSnapshots open() {
+    SnapshotStore store = new SnapshotStore(file, MoreExecutors.newDirectExecutorService());
+    store.preload();
+    return new DeviceSnapshots(store, MoreExecutors.newDirectExecutorService());
+  }
+}
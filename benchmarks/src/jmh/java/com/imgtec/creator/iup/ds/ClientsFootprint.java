@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.creator.iup.ds;
+
+import com.google.gson.reflect.TypeToken;
+import com.imgtec.creator.iup.ds.pojo.Client;
+import com.imgtec.creator.iup.ds.pojo.Clients;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Prints retained heap of a decoded page of clients, before and after links of every client were looked up.
+ * Run with: ./gradlew :benchmarks:footprint
+ */
+public class ClientsFootprint {
+
+  private static final int CLIENTS = 1000;
+
+  public static void main(String[] args) throws IOException {
+    JsonDecoder decoder = new JsonDecoder(JsonDecoder.createGson());
+    String payload = PayloadGenerator.clients("https://deviceserver.creatordev.io/clients/", CLIENTS);
+    Clients clients = decoder.decode(new StringReader(payload), TypeToken.get(Clients.class));
+    List<Client> items = clients.getItems();
+
+    print("decoded", items);
+    for (Client client : items) {
+      client.getLinkByRel("self");
+    }
+    print("after lookup", items);
+  }
+
+  private static void print(String state, List<Client> items) {
+    GraphLayout layout = GraphLayout.parseInstance(items);
+    System.out.println(String.format("%d clients %s: %d objects, %d bytes, %d bytes per client",
+        items.size(), state, layout.totalCount(), layout.totalSize(), layout.totalSize() / items.size()));
+  }
+}
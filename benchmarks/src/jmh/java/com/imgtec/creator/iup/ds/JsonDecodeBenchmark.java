@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.creator.iup.ds;
+
+import com.google.common.base.Predicates;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.imgtec.creator.iup.ds.pojo.Clients;
+import com.imgtec.creator.iup.ds.pojo.Instances;
+import com.imgtec.creator.iup.ds.pojo.LightControl;
+import com.imgtec.creator.iup.ds.pojo.ObjectTypes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+
+/**
+ * Decoding of paged Device Server responses through {@link JsonDecoder}, the same path DSService uses.
+ * Clients page is also decoded from response body the way DSService did before streaming decoding,
+ * as a baseline for allocation per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonDecodeBenchmark {
+
+  private static final String BASE_URL = "https://deviceserver.creatordev.io/clients/";
+  private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+  @Param({"10", "100", "1000", "10000"})
+  int items;
+
+  private JsonDecoder decoder;
+  private Gson plainGson;
+  private FilteringClientsAdapter oneClientFilter;
+  private String clients;
+  private byte[] clientsBody;
+  private String instances;
+  private String objectTypes;
+
+  @Setup
+  public void setUp() {
+    Gson gson = JsonDecoder.createGson();
+    decoder = new JsonDecoder(gson);
+    plainGson = new Gson();
+    oneClientFilter = new FilteringClientsAdapter(gson, Predicates.equalTo("WiFire_" + (items - 1)));
+    clients = PayloadGenerator.clients(BASE_URL, items);
+    clientsBody = clients.getBytes(Charset.forName("UTF-8"));
+    instances = PayloadGenerator.lightControls(BASE_URL + "0/objecttypes/3311/instances/", items);
+    objectTypes = PayloadGenerator.objectTypes(BASE_URL + "0/objecttypes/", items);
+  }
+
+  @Benchmark
+  public Clients decodeClients() throws IOException {
+    return decoder.decode(new StringReader(clients), TypeToken.get(Clients.class));
+  }
+
+  /**
+   * Streams clients page from response body, as DSService.execute does.
+   */
+  @Benchmark
+  public Clients decodeClientsBody() throws IOException {
+    ResponseBody body = ResponseBody.create(JSON, clientsBody);
+    try {
+      return decoder.decode(body.charStream(), TypeToken.get(Clients.class));
+    } finally {
+      body.close();
+    }
+  }
+
+  /**
+   * Baseline: buffers whole response body into String and decodes it with default Gson.
+   */
+  @Benchmark
+  public Clients decodeClientsBodyBuffered() throws IOException {
+    ResponseBody body = ResponseBody.create(JSON, clientsBody);
+    return plainGson.fromJson(body.string(), Clients.class);
+  }
+
+  /**
+   * Looks for single client by name, as getClient does.
+   */
+  @Benchmark
+  public Clients decodeClientsFiltered() throws IOException {
+    return decoder.decode(new StringReader(clients), oneClientFilter);
+  }
+
+  @Benchmark
+  public Instances<LightControl> decodeInstances() throws IOException {
+    return decoder.decode(new StringReader(instances), new TypeToken<Instances<LightControl>>() {});
+  }
+
+  @Benchmark
+  public ObjectTypes decodeObjectTypes() throws IOException {
+    return decoder.decode(new StringReader(objectTypes), TypeToken.get(ObjectTypes.class));
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.creator.iup.ds;
+
+import com.google.gson.reflect.TypeToken;
+import com.imgtec.creator.iup.ds.pojo.Client;
+import com.imgtec.creator.iup.ds.pojo.Clients;
+import com.imgtec.creator.iup.ds.pojo.Link;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Link lookup on freshly decoded pojos (first call builds the index) and on already indexed ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LinkLookupBenchmark {
+
+  private JsonDecoder decoder;
+  private String payload;
+  private List<Client> fresh;
+  private Client indexed;
+
+  @Setup
+  public void setUp() throws IOException {
+    decoder = new JsonDecoder(JsonDecoder.createGson());
+    payload = PayloadGenerator.clients("https://deviceserver.creatordev.io/clients/", 100);
+    Clients clients = decode();
+    indexed = clients.getItems().get(0);
+    indexed.getLinkByRel("self");
+  }
+
+  /**
+   * First lookup builds the index, so every invocation needs pojos that were never queried.
+   */
+  @Setup(Level.Invocation)
+  public void decodeFresh() throws IOException {
+    fresh = decode().getItems();
+  }
+
+  @Benchmark
+  public Link firstLookup() {
+    Link link = null;
+    for (Client client : fresh) {
+      link = client.getLinkByRel("objecttypes");
+    }
+    return link;
+  }
+
+  @Benchmark
+  public Link indexedLookup() {
+    return indexed.getLinkByRel("metrics");
+  }
+
+  @Benchmark
+  public Link missingRel() {
+    return indexed.getLinkByRel("instances");
+  }
+
+  private Clients decode() throws IOException {
+    return decoder.decode(new StringReader(payload), TypeToken.get(Clients.class));
+  }
+}
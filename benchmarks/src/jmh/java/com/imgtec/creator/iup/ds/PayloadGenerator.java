@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.creator.iup.ds;
+
+/**
+ * Builds JSON payloads shaped like Device Server responses.
+ */
+final class PayloadGenerator {
+
+  private PayloadGenerator() {
+  }
+
+  static String clients(String baseUrl, int count) {
+    StringBuilder sb = new StringBuilder(count * 512);
+    beginPage(sb, count);
+    for (int i = 0; i < count; ++i) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      String self = baseUrl + i;
+      sb.append("{\"Name\":\"WiFire_").append(i).append("\",\"Links\":[");
+      link(sb, "self", self, "application/vnd.imgtec.client");
+      sb.append(',');
+      link(sb, "objecttypes", self + "/objecttypes", "application/vnd.imgtec.objecttypes");
+      sb.append(',');
+      link(sb, "subscriptions", self + "/subscriptions", "application/vnd.imgtec.subscriptions");
+      sb.append(',');
+      link(sb, "metrics", self + "/metrics", "application/vnd.imgtec.metrics");
+      sb.append("]}");
+    }
+    endPage(sb, baseUrl);
+    return sb.toString();
+  }
+
+  static String lightControls(String baseUrl, int count) {
+    StringBuilder sb = new StringBuilder(count * 256);
+    beginPage(sb, count);
+    for (int i = 0; i < count; ++i) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"InstanceID\":\"").append(i).append("\",\"On/Off\":").append(i % 2 == 0)
+          .append(",\"Dimmer\":").append(i % 100).append(",\"Links\":[");
+      link(sb, "self", baseUrl + i, "application/vnd.oma.lwm2m.ext.lightcontrol");
+      sb.append(',');
+      link(sb, "observe", baseUrl + i + "/subscriptions", "application/vnd.imgtec.subscriptions");
+      sb.append("]}");
+    }
+    endPage(sb, baseUrl);
+    return sb.toString();
+  }
+
+  static String objectTypes(String baseUrl, int count) {
+    StringBuilder sb = new StringBuilder(count * 256);
+    beginPage(sb, count);
+    for (int i = 0; i < count; ++i) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      String id = String.valueOf(3200 + i);
+      sb.append("{\"ObjectTypeID\":\"").append(id).append("\",\"Links\":[");
+      link(sb, "self", baseUrl + id, "application/vnd.imgtec.objecttype");
+      sb.append(',');
+      link(sb, "definition", "https://deviceserver.creatordev.io/objecttypes/definitions/" + id,
+          "application/vnd.imgtec.objectdefinition");
+      sb.append(',');
+      link(sb, "instances", baseUrl + id + "/instances", "application/vnd.imgtec.instances");
+      sb.append("]}");
+    }
+    endPage(sb, baseUrl);
+    return sb.toString();
+  }
+
+  private static void beginPage(StringBuilder sb, int count) {
+    sb.append("{\"PageInfo\":{\"TotalCount\":").append(count)
+        .append(",\"ItemsCount\":").append(count)
+        .append(",\"StartIndex\":0},\"Items\":[");
+  }
+
+  private static void endPage(StringBuilder sb, String baseUrl) {
+    sb.append("],\"Links\":[");
+    link(sb, "self", baseUrl, "application/vnd.imgtec.page");
+    sb.append("]}");
+  }
+
+  private static void link(StringBuilder sb, String rel, String href, String type) {
+    sb.append("{\"rel\":\"").append(rel)
+        .append("\",\"href\":\"").append(href)
+        .append("\",\"type\":\"").append(type).append("\"}");
+  }
+}
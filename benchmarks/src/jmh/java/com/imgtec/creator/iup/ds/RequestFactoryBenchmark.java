@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.creator.iup.ds;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+
+/**
+ * Request shapes DSService builds most often: paged GET, login form POST and resource PUT.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestFactoryBenchmark {
+
+  private static final String CLIENTS_URL = "https://deviceserver.creatordev.io/clients";
+  private static final String INSTANCE_URL = CLIENTS_URL + "/0/objecttypes/3311/instances/0";
+  private static final String TOKEN_URL = "https://deviceserver.creatordev.io/oauth/token";
+
+  private Map<String, String> pageParams;
+  private Map<String, String> formParams;
+  private Map<String, String> headers;
+  private String instanceJson;
+
+  @Setup
+  public void setUp() {
+    pageParams = new LinkedHashMap<>();
+    pageParams.put("startIndex", "20");
+    pageParams.put("pageSize", "20");
+
+    formParams = new HashMap<>();
+    formParams.put("grant_type", "password");
+    formParams.put("username", "developer%40example.com");
+    formParams.put("password", "secret");
+
+    headers = new HashMap<>();
+    headers.put("Accept", "application/json");
+
+    instanceJson = "{\"On/Off\":true,\"Dimmer\":50}";
+  }
+
+  @Benchmark
+  public Request pagedGet() {
+    return RequestFactory.buildRequest(CLIENTS_URL, pageParams, "GET", headers, null, null, true);
+  }
+
+  @Benchmark
+  public Request formPost() {
+    return RequestFactory.buildRequest(TOKEN_URL, null, "POST", headers, formParams, null, false);
+  }
+
+  @Benchmark
+  public Request jsonPut() {
+    return RequestFactory.buildRequest(INSTANCE_URL, null, "PUT", headers, null, instanceJson, true);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.creator.iup.retrofit.pojos.softap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.simpleframework.xml.Serializer;
+import org.simpleframework.xml.core.Persister;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SoftAP payloads, encoded and decoded with the Persister the retrofit SimpleXML converter uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SoftApXmlBenchmark {
+
+  private static final int LOG_ENTRIES = 50;
+
+  private Serializer serializer;
+  private NetworkConfig networkConfig;
+  private DeviceServer deviceServer;
+  private String deviceInfo;
+  private String deviceLog;
+
+  @Setup
+  public void setUp() {
+    serializer = new Persister();
+    networkConfig = new NetworkConfig("HomeNetwork", "WPA2", "password", "DHCP");
+    deviceServer = new DeviceServer("coaps://deviceserver.creatordev.io:15684", "PSK",
+        "identity", "secret", null, null);
+    deviceInfo = "<DeviceInfo>"
+        + "<DeviceName>WiFire_1</DeviceName>"
+        + "<ClientID>0a1b2c3d</ClientID>"
+        + "<DeviceType>WiFire</DeviceType>"
+        + "<SerialNumber>1234567890</SerialNumber>"
+        + "<MACAddress>00:11:22:33:44:55</MACAddress>"
+        + "<SoftwareVersion>1.0.0</SoftwareVersion>"
+        + "</DeviceInfo>";
+    StringBuilder sb = new StringBuilder("<activity-log>");
+    for (int i = 0; i < LOG_ENTRIES; ++i) {
+      sb.append("<loginfo><datetime>2016-12-01T10:00:").append(i % 60).append("Z</datetime>")
+          .append("<level>INFO</level><category>Network</category>")
+          .append("<message>Entry ").append(i).append("</message></loginfo>");
+    }
+    deviceLog = sb.append("</activity-log>").toString();
+  }
+
+  @Benchmark
+  public String writeNetworkConfig() throws Exception {
+    StringWriter writer = new StringWriter();
+    serializer.write(networkConfig, writer);
+    return writer.toString();
+  }
+
+  @Benchmark
+  public String writeDeviceServer() throws Exception {
+    StringWriter writer = new StringWriter();
+    serializer.write(deviceServer, writer);
+    return writer.toString();
+  }
+
+  @Benchmark
+  public DeviceInfo readDeviceInfo() throws Exception {
+    return serializer.read(DeviceInfo.class, deviceInfo);
+  }
+
+  @Benchmark
+  public DeviceLog readDeviceLog() throws Exception {
+    return serializer.read(DeviceLog.class, deviceLog);
+  }
+}
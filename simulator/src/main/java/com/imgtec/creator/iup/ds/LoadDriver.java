@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.creator.iup.ds;
+
+import com.google.gson.reflect.TypeToken;
+import com.imgtec.creator.iup.ds.pojo.Api;
+import com.imgtec.creator.iup.ds.pojo.Client;
+import com.imgtec.creator.iup.ds.pojo.Clients;
+import com.imgtec.creator.iup.ds.pojo.Instances;
+import com.imgtec.creator.iup.ds.pojo.OauthToken;
+import com.imgtec.creator.iup.ds.pojo.ObjectType;
+import com.imgtec.creator.iup.ds.pojo.ObjectTypes;
+import com.imgtec.creator.iup.ds.pojo.Pojo;
+import com.imgtec.creator.iup.simulator.DeviceServerSimulator;
+import com.imgtec.creator.iup.simulator.SimulatorOptions;
+import com.imgtec.creator.iup.utils.LatencyHistogram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Load generator replaying request sequence of the interactive screen against Device Server: API root,
+ * token, page of clients, object types of one client, then polling instances of 3200, 3202, 3303 and 3311
+ * and toggling lights now and then. Requests are built and decoded with the same {@link RequestFactory}
+ * and {@link JsonDecoder} DSService uses, latency is reported per operation.
+ *
+ * Without "--url" in-process {@link DeviceServerSimulator} is started, options not recognized by the
+ * driver are passed to it, e.g. "--workers=32 --duration=60 --clients=5000 --latency=80 --jitter=40".
+ */
+public class LoadDriver {
+
+  private static final int[] POLLED_OBJECTS = {3200, 3202, 3303, 3311};
+  private static final int LIGHT_CONTROL_OBJECT_ID = 3311;
+  private static final int LIGHTS = 4;
+  private static final int CLIENTS_PAGE_SIZE = 20;
+  private static final double TOGGLE_PROBABILITY = 0.2;
+  /** Resources of polled objects differ, decoding only links is enough to exercise the decoder. */
+  private static final TypeToken<Instances<Pojo>> INSTANCES_TYPE = new TypeToken<Instances<Pojo>>() {
+  };
+
+  private final String url;
+  private final int workers;
+  private final int polls;
+  private final long seed;
+  private final OkHttpClient client;
+  private final JsonDecoder decoder = new JsonDecoder(JsonDecoder.createGson());
+  private final ConcurrentMap<String, OperationStats> stats = new ConcurrentHashMap<>();
+  private final AtomicLong failedSessions = new AtomicLong();
+
+  public LoadDriver(String url, int workers, int polls, long seed) {
+    this.url = url;
+    this.workers = workers;
+    this.polls = polls;
+    this.seed = seed;
+    this.client = new OkHttpClient.Builder()
+        .connectionPool(new ConnectionPool(workers, 5, TimeUnit.MINUTES))
+        .build();
+  }
+
+  /**
+   * Runs workers for specified time and returns report of collected statistics.
+   */
+  public String run(long durationSeconds) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < workers; ++i) {
+      Thread thread = new Thread(new Session(new Random(seed + i), deadline), "load-" + i);
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    client.connectionPool().evictAll();
+    return report(durationSeconds);
+  }
+
+  private String report(long durationSeconds) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.US, "%-12s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+        "operation", "count", "errors", "req/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+    long total = 0;
+    for (Map.Entry<String, OperationStats> entry : new TreeMap<>(stats).entrySet()) {
+      LatencyHistogram histogram = entry.getValue().histogram;
+      long count = histogram.getCount();
+      total += count;
+      sb.append(String.format(Locale.US, "%-12s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+          entry.getKey(), count, entry.getValue().errors.get(), (double) count / durationSeconds,
+          histogram.getMeanMillis(), histogram.getPercentileMillis(50), histogram.getPercentileMillis(90),
+          histogram.getPercentileMillis(99), histogram.getMaxMillis()));
+    }
+    sb.append(String.format(Locale.US, "total %d requests, %.1f req/s, %d failed sessions%n",
+        total, (double) total / durationSeconds, failedSessions.get()));
+    return sb.toString();
+  }
+
+  private OperationStats statsOf(String operation) {
+    OperationStats operationStats = stats.get(operation);
+    if (operationStats == null) {
+      stats.putIfAbsent(operation, new OperationStats());
+      operationStats = stats.get(operation);
+    }
+    return operationStats;
+  }
+
+  private static class OperationStats {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    final AtomicLong errors = new AtomicLong();
+  }
+
+  /**
+   * Sequence of requests of one user, repeated until deadline. Every session logs in again, so token
+   * endpoint is part of the measured mix.
+   */
+  private class Session implements Runnable {
+
+    private final Random random;
+    private final long deadline;
+    private final OkHttpClient sessionClient;
+    private volatile OauthToken token;
+    private Api api;
+
+    Session(Random random, long deadline) {
+      this.random = random;
+      this.deadline = deadline;
+      this.sessionClient = client.newBuilder()
+          .addInterceptor(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+              Request request = chain.request();
+              OauthToken current = token;
+              if (Boolean.TRUE.equals(request.tag()) && current != null) {
+                request = request.newBuilder()
+                    .header("Authorization", "Bearer " + current.getAccessToken())
+                    .build();
+              }
+              return chain.proceed(request);
+            }
+          })
+          .build();
+    }
+
+    @Override
+    public void run() {
+      while (System.nanoTime() < deadline) {
+        try {
+          session();
+        } catch (IOException | RuntimeException e) {
+          failedSessions.incrementAndGet();
+        }
+      }
+    }
+
+    private void session() throws IOException {
+      api = call("api", RequestFactory.buildRequest(url, null, "GET", null, null, null, false), Api.class);
+      Map<String, String> params = new HashMap<>();
+      params.put("username", "load");
+      params.put("password", "load");
+      params.put("grant_type", "password");
+      token = call("token", RequestFactory.buildRequest(api.getLinkByRel("authenticate").getHref(), null, "POST",
+          null, params, null, false), OauthToken.class);
+
+      Map<String, String> queryParams = new HashMap<>();
+      queryParams.put("startIndex", "0");
+      queryParams.put("pageSize", Integer.toString(CLIENTS_PAGE_SIZE));
+      Clients clients = call("clients", RequestFactory.buildRequest(api.getLinkByRel("clients").getHref(),
+          queryParams, "GET", null, null, null, true), Clients.class);
+      if (clients.getItems().isEmpty()) {
+        return;
+      }
+      Client client = clients.getItems().get(random.nextInt(clients.getItems().size()));
+      ObjectTypes objectTypes = call("objecttypes", RequestFactory.buildRequest(
+          client.getLinkByRel("objecttypes").getHref() + "?pageSize=1000", null, "GET", null, null, null, true),
+          ObjectTypes.class);
+
+      for (int poll = 0; poll < polls && System.nanoTime() < deadline; ++poll) {
+        for (int objectID : POLLED_OBJECTS) {
+          ObjectType objectType = find(objectTypes, objectID);
+          if (objectType != null) {
+            call("instances", RequestFactory.buildRequest(objectType.getLinkByRel("instances").getHref(),
+                null, "GET", null, null, null, true), INSTANCES_TYPE);
+          }
+        }
+        ObjectType lights = find(objectTypes, LIGHT_CONTROL_OBJECT_ID);
+        if (lights != null && random.nextDouble() < TOGGLE_PROBABILITY) {
+          String rawData = "{\"On/Off\":" + random.nextBoolean() + "}";
+          call("update", RequestFactory.buildRequest(lights.getLinkByRel("instances").getHref() + "/"
+              + random.nextInt(LIGHTS), null, "PUT", null, null, rawData, true), (Class<Void>) null);
+        }
+      }
+    }
+
+    /**
+     * Executes request and decodes response, refreshing token once on 401. Latency covers whole call
+     * including token refresh and decoding, like the one observed by DSService callers.
+     * @param type type of response, null when response body is ignored
+     */
+    private <T> T call(String operation, Request request, Class<T> type) throws IOException {
+      return call(operation, request, type != null ? TypeToken.get(type) : null);
+    }
+
+    private <T> T call(String operation, Request request, TypeToken<T> type) throws IOException {
+      OperationStats operationStats = statsOf(operation);
+      long start = System.nanoTime();
+      try {
+        Response response = sessionClient.newCall(request).execute();
+        if (response.code() == 401 && Boolean.TRUE.equals(request.tag())) {
+          response.body().close();
+          refresh();
+          response = sessionClient.newCall(request).execute();
+        }
+        try {
+          if (!response.isSuccessful()) {
+            throw new IOException("HTTP " + response.code() + " " + request.method() + " " + request.url());
+          }
+          T result = type != null ? decoder.<T>decode(response.body().charStream(), type) : null;
+          operationStats.histogram.record(System.nanoTime() - start);
+          return result;
+        } finally {
+          response.body().close();
+        }
+      } catch (IOException | RuntimeException e) {
+        operationStats.errors.incrementAndGet();
+        throw e;
+      }
+    }
+
+    private void refresh() throws IOException {
+      Map<String, String> params = new HashMap<>();
+      params.put("refresh_token", token.getRefreshToken());
+      params.put("grant_type", "refresh_token");
+      token = call("refresh", RequestFactory.buildRequest(api.getLinkByRel("authenticate").getHref(), null, "POST",
+          null, params, null, false), OauthToken.class);
+    }
+  }
+
+  private static ObjectType find(ObjectTypes objectTypes, int objectID) {
+    String id = Integer.toString(objectID);
+    for (ObjectType objectType : objectTypes.getItems()) {
+      if (id.equals(objectType.getObjectTypeID())) {
+        return objectType;
+      }
+    }
+    return null;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String url = null;
+    int workers = 16;
+    int polls = 10;
+    long duration = 30;
+    long seed = 1;
+    List<String> simulatorArgs = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--url=")) {
+        url = arg.substring("--url=".length());
+      } else if (arg.startsWith("--workers=")) {
+        workers = Integer.parseInt(arg.substring("--workers=".length()));
+      } else if (arg.startsWith("--polls=")) {
+        polls = Integer.parseInt(arg.substring("--polls=".length()));
+      } else if (arg.startsWith("--duration=")) {
+        duration = Long.parseLong(arg.substring("--duration=".length()));
+      } else {
+        if (arg.startsWith("--seed=")) {
+          seed = Long.parseLong(arg.substring("--seed=".length()));
+        }
+        simulatorArgs.add(arg);
+      }
+    }
+
+    DeviceServerSimulator simulator = null;
+    if (url == null) {
+      SimulatorOptions options = SimulatorOptions.parse(simulatorArgs.toArray(new String[simulatorArgs.size()]))
+          .setPort(0);
+      simulator = new DeviceServerSimulator(options);
+      simulator.start();
+      url = simulator.getUrl();
+      System.out.println("Started simulator on " + url + " (" + options + ")");
+    }
+    System.out.println("Running " + workers + " workers for " + duration + "s against " + url);
+    try {
+      System.out.print(new LoadDriver(url, workers, polls, seed).run(duration));
+    } finally {
+      if (simulator != null) {
+        simulator.shutdown();
+      }
+    }
+  }
+}
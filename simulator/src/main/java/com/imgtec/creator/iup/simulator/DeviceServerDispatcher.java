@@ -0,0 +1,504 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.creator.iup.simulator;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * Serves the part of Device Server REST API used by DSService: API root, OAuth token endpoint,
+ * paged clients, object types, instances (GET and PUT), PSK identities and bootstrap configuration.
+ *
+ * Links are built from Host header of incoming request, so the same simulator can be reached as
+ * localhost from JVM and as 10.0.2.2 from emulator. Requests are served concurrently, one thread
+ * per connection.
+ */
+public class DeviceServerDispatcher extends Dispatcher {
+
+  static final int DEVICE_OBJECT_ID = 3;
+  static final int DIGITAL_INPUT_OBJECT_ID = 3200;
+  static final int ANALOG_INPUT_OBJECT_ID = 3202;
+  static final int TEMPERATURE_OBJECT_ID = 3303;
+  static final int LIGHT_CONTROL_OBJECT_ID = 3311;
+
+  /** Object ID to number of its instances on every client, mirrors WiFire board. */
+  private static final Map<Integer, Integer> OBJECTS;
+
+  static {
+    Map<Integer, Integer> objects = new LinkedHashMap<>();
+    objects.put(DEVICE_OBJECT_ID, 1);
+    objects.put(DIGITAL_INPUT_OBJECT_ID, 2);
+    objects.put(ANALOG_INPUT_OBJECT_ID, 1);
+    objects.put(TEMPERATURE_OBJECT_ID, 1);
+    objects.put(LIGHT_CONTROL_OBJECT_ID, 4);
+    OBJECTS = Collections.unmodifiableMap(objects);
+  }
+
+  private static final int DEFAULT_PAGE_SIZE = 20;
+  private static final String JSON = "application/json";
+
+  private final SimulatorOptions options;
+  private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+  private final Random random;
+  private final AtomicLong tokenCounter = new AtomicLong();
+  private final Map<String, Long> accessTokens = new ConcurrentHashMap<>();
+  private final Set<String> refreshTokens = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  /** Bit mask of lights turned on, one entry per client. */
+  private final AtomicIntegerArray lights;
+
+  public DeviceServerDispatcher(SimulatorOptions options) {
+    this.options = options;
+    this.random = new Random(options.getSeed());
+    this.lights = new AtomicIntegerArray(options.getClients());
+  }
+
+  @Override
+  public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+    long delay;
+    double failure;
+    synchronized (random) {
+      delay = options.getLatencyMillis() + (long) (random.nextDouble() * options.getJitterMillis());
+      failure = random.nextDouble();
+    }
+    Thread.sleep(delay);
+
+    if (failure < options.getDisconnectRate()) {
+      return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START);
+    }
+    if (failure < options.getDisconnectRate() + options.getErrorRate()) {
+      return error(500, "Injected failure");
+    }
+
+    String base = "http://" + request.getHeader("Host");
+    HttpUrl url = HttpUrl.parse(base + request.getPath());
+    if (url == null) {
+      return error(400, "Malformed request");
+    }
+    List<String> path = url.pathSegments();
+    String method = request.getMethod();
+
+    if (path.size() == 1 && path.get(0).isEmpty()) {
+      return "GET".equals(method) ? api(base) : notAllowed();
+    }
+    if (path.size() == 2 && "oauth".equals(path.get(0)) && "token".equals(path.get(1))) {
+      return "POST".equals(method) ? token(request.getBody().readUtf8()) : notAllowed();
+    }
+    if (!isAuthorized(request.getHeader("Authorization"))) {
+      return error(401, "Invalid or expired token");
+    }
+    try {
+      switch (path.get(0)) {
+        case "clients":
+          return clients(base, url, path, method, request);
+        case "identities":
+          return identities(base, path, method);
+        case "configuration":
+          return configuration(base, path, method);
+        default:
+          return notFound();
+      }
+    } catch (NumberFormatException e) {
+      return notFound();
+    }
+  }
+
+  private MockResponse api(String base) {
+    JsonObject api = new JsonObject();
+    api.add("Links", links(
+        link("authenticate", base + "/oauth/token"),
+        link("clients", base + "/clients"),
+        link("identities", base + "/identities"),
+        link("configuration", base + "/configuration")));
+    return json(200, api);
+  }
+
+  private MockResponse token(String body) {
+    Map<String, String> form = parseForm(body);
+    String grantType = form.get("grant_type");
+    if ("password".equals(grantType)) {
+      if (isEmpty(form.get("username")) || isEmpty(form.get("password"))) {
+        return error(401, "Invalid credentials");
+      }
+    } else if ("refresh_token".equals(grantType)) {
+      if (!refreshTokens.remove(form.get("refresh_token"))) {
+        return error(401, "Invalid refresh token");
+      }
+    } else {
+      return error(400, "Unsupported grant type");
+    }
+
+    long id = tokenCounter.incrementAndGet();
+    String accessToken = "access-" + id;
+    String refreshToken = "refresh-" + id;
+    accessTokens.put(accessToken, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(options.getTokenTtlSeconds()));
+    refreshTokens.add(refreshToken);
+
+    JsonObject token = new JsonObject();
+    token.addProperty("access_token", accessToken);
+    token.addProperty("token_type", "Bearer");
+    token.addProperty("expires_in", options.getTokenTtlSeconds());
+    token.addProperty("refresh_token", refreshToken);
+    return json(200, token);
+  }
+
+  private boolean isAuthorized(String authorization) {
+    if (authorization == null || !authorization.startsWith("Bearer ")) {
+      return false;
+    }
+    Long expiry = accessTokens.get(authorization.substring("Bearer ".length()));
+    return expiry != null && expiry > System.currentTimeMillis();
+  }
+
+  private MockResponse clients(String base, HttpUrl url, List<String> path, String method,
+                               RecordedRequest request) {
+    String clientsHref = base + "/clients";
+    if (path.size() == 1) {
+      return "GET".equals(method) ? clientsPage(clientsHref, url) : notAllowed();
+    }
+    int client = Integer.parseInt(path.get(1));
+    if (client < 0 || client >= options.getClients()) {
+      return notFound();
+    }
+    String clientHref = clientsHref + "/" + client;
+    if (path.size() == 2) {
+      return "GET".equals(method) ? json(200, client(clientHref, client)) : notAllowed();
+    }
+    if (!"objecttypes".equals(path.get(2))) {
+      return notFound();
+    }
+    String objectTypesHref = clientHref + "/objecttypes";
+    if (path.size() == 3) {
+      return "GET".equals(method) ? objectTypes(objectTypesHref) : notAllowed();
+    }
+    int objectID = Integer.parseInt(path.get(3));
+    Integer instanceCount = OBJECTS.get(objectID);
+    if (instanceCount == null) {
+      return notFound();
+    }
+    String objectTypeHref = objectTypesHref + "/" + objectID;
+    if (path.size() == 4) {
+      return "GET".equals(method) ? json(200, objectType(objectTypeHref, objectID)) : notAllowed();
+    }
+    if (!"instances".equals(path.get(4))) {
+      return notFound();
+    }
+    String instancesHref = objectTypeHref + "/instances";
+    if (path.size() == 5) {
+      return "GET".equals(method) ? instancesPage(instancesHref, url, client, objectID, instanceCount) : notAllowed();
+    }
+    int instance = Integer.parseInt(path.get(5));
+    if (path.size() > 6 || instance < 0 || instance >= instanceCount) {
+      return notFound();
+    }
+    switch (method) {
+      case "GET":
+        return json(200, instance(instancesHref + "/" + instance, client, objectID, instance));
+      case "PUT":
+        return updateInstance(client, objectID, instance, request.getBody().readUtf8());
+      default:
+        return notAllowed();
+    }
+  }
+
+  private MockResponse clientsPage(String href, HttpUrl url) {
+    int total = options.getClients();
+    int startIndex = intParameter(url, "startIndex", 0);
+    int pageSize = Math.max(1, intParameter(url, "pageSize", DEFAULT_PAGE_SIZE));
+    int end = Math.min(total, startIndex + pageSize);
+    JsonArray items = new JsonArray();
+    for (int i = startIndex; i < end; ++i) {
+      items.add(client(href + "/" + i, i));
+    }
+    return json(200, page(href, total, startIndex, pageSize, items));
+  }
+
+  private static JsonObject client(String href, int client) {
+    JsonObject json = new JsonObject();
+    json.addProperty("Name", "WiFire_" + client);
+    json.add("Links", links(
+        link("self", href),
+        link("objecttypes", href + "/objecttypes")));
+    return json;
+  }
+
+  private MockResponse objectTypes(String href) {
+    JsonArray items = new JsonArray();
+    for (int objectID : OBJECTS.keySet()) {
+      items.add(objectType(href + "/" + objectID, objectID));
+    }
+    JsonObject page = page(href, OBJECTS.size(), 0, OBJECTS.size(), items);
+    return json(200, page);
+  }
+
+  private static JsonObject objectType(String href, int objectID) {
+    JsonObject json = new JsonObject();
+    json.addProperty("ObjectTypeID", Integer.toString(objectID));
+    json.add("Links", links(
+        link("self", href),
+        link("instances", href + "/instances")));
+    return json;
+  }
+
+  private MockResponse instancesPage(String href, HttpUrl url, int client, int objectID, int instanceCount) {
+    int startIndex = intParameter(url, "startIndex", 0);
+    int pageSize = Math.max(1, intParameter(url, "pageSize", DEFAULT_PAGE_SIZE));
+    int end = Math.min(instanceCount, startIndex + pageSize);
+    JsonArray items = new JsonArray();
+    for (int i = startIndex; i < end; ++i) {
+      items.add(instance(href + "/" + i, client, objectID, i));
+    }
+    return json(200, page(href, instanceCount, startIndex, pageSize, items));
+  }
+
+  private JsonObject instance(String href, int client, int objectID, int instance) {
+    JsonObject json = new JsonObject();
+    json.addProperty("InstanceID", Integer.toString(instance));
+    switch (objectID) {
+      case DEVICE_OBJECT_ID:
+        json.addProperty("Manufacturer", "Imagination Technologies");
+        json.addProperty("SerialNumber", String.format("WF%08d", client));
+        json.addProperty("DeviceType", "WiFire");
+        json.addProperty("SoftwareVersion", "1.0.0");
+        break;
+      case DIGITAL_INPUT_OBJECT_ID:
+        json.addProperty("DigitalInputState", nextDouble() < 0.1);
+        break;
+      case ANALOG_INPUT_OBJECT_ID:
+        json.addProperty("AnalogInputCurrentValue", (float) (3.3 * nextDouble()));
+        json.addProperty("MinMeasuredValue", 0f);
+        json.addProperty("MaxMeasuredValue", 3.3f);
+        json.addProperty("SensorType", "Potentiometer");
+        break;
+      case TEMPERATURE_OBJECT_ID:
+        json.addProperty("SensorValue", (float) (35 + 10 * nextDouble()));
+        json.addProperty("MinMeasuredValue", 35f);
+        json.addProperty("MaxMeasuredValue", 45f);
+        json.addProperty("SensorUnits", "C");
+        break;
+      case LIGHT_CONTROL_OBJECT_ID:
+        json.addProperty("On/Off", (lights.get(client) & (1 << instance)) != 0);
+        break;
+      default:
+        break;
+    }
+    json.add("Links", links(link("self", href)));
+    return json;
+  }
+
+  private MockResponse updateInstance(int client, int objectID, int instance, String body) {
+    if (objectID != LIGHT_CONTROL_OBJECT_ID) {
+      return notAllowed();
+    }
+    JsonElement onOff;
+    try {
+      JsonElement json = new JsonParser().parse(body);
+      onOff = json.isJsonObject() ? json.getAsJsonObject().get("On/Off") : null;
+    } catch (JsonParseException e) {
+      return error(400, "Malformed body");
+    }
+    if (onOff == null || !onOff.isJsonPrimitive()) {
+      return error(400, "Missing On/Off");
+    }
+    int mask = 1 << instance;
+    int current;
+    int updated;
+    do {
+      current = lights.get(client);
+      updated = onOff.getAsBoolean() ? current | mask : current & ~mask;
+    } while (!lights.compareAndSet(client, current, updated));
+    return new MockResponse().setResponseCode(204);
+  }
+
+  private MockResponse identities(String base, List<String> path, String method) {
+    String href = base + "/identities";
+    if (path.size() == 1) {
+      if (!"GET".equals(method)) {
+        return notAllowed();
+      }
+      JsonObject identities = new JsonObject();
+      identities.add("Links", links(link("psk", href + "/psk")));
+      return json(200, identities);
+    }
+    if (path.size() == 2 && "psk".equals(path.get(1))) {
+      if ("GET".equals(method)) {
+        JsonObject psks = new JsonObject();
+        psks.add("Links", links(link("self", href + "/psk"), link("add", href + "/psk")));
+        return json(200, psks);
+      }
+      if ("POST".equals(method)) {
+        long id = tokenCounter.incrementAndGet();
+        JsonObject psk = new JsonObject();
+        psk.addProperty("Identity", String.format("identity-%016x", id));
+        psk.addProperty("Secret", String.format("%032x", id * 0x9E3779B97F4A7C15L));
+        return json(201, psk);
+      }
+      return notAllowed();
+    }
+    return notFound();
+  }
+
+  private MockResponse configuration(String base, List<String> path, String method) {
+    String href = base + "/configuration";
+    if (!"GET".equals(method)) {
+      return notAllowed();
+    }
+    if (path.size() == 1) {
+      JsonObject configuration = new JsonObject();
+      configuration.add("Links", links(link("bootstrap", href + "/bootstrap")));
+      return json(200, configuration);
+    }
+    if (path.size() == 2 && "bootstrap".equals(path.get(1))) {
+      JsonObject bootstrap = new JsonObject();
+      bootstrap.addProperty("Url", "coaps://localhost:15684");
+      return json(200, bootstrap);
+    }
+    return notFound();
+  }
+
+  private static JsonObject page(String href, int total, int startIndex, int pageSize, JsonArray items) {
+    JsonObject pageInfo = new JsonObject();
+    pageInfo.addProperty("TotalCount", total);
+    pageInfo.addProperty("ItemsCount", items.size());
+    pageInfo.addProperty("StartIndex", startIndex);
+    if (startIndex + items.size() < total) {
+      pageInfo.add("Links", links(link("next",
+          href + "?startIndex=" + (startIndex + items.size()) + "&pageSize=" + pageSize)));
+    }
+    JsonObject page = new JsonObject();
+    page.add("PageInfo", pageInfo);
+    page.add("Items", items);
+    page.add("Links", links(link("self", href + "?startIndex=" + startIndex + "&pageSize=" + pageSize)));
+    return page;
+  }
+
+  private static JsonArray links(JsonObject... links) {
+    JsonArray array = new JsonArray();
+    for (JsonObject link : links) {
+      array.add(link);
+    }
+    return array;
+  }
+
+  private static JsonObject link(String rel, String href) {
+    JsonObject link = new JsonObject();
+    link.addProperty("rel", rel);
+    link.addProperty("href", href);
+    link.addProperty("type", JSON);
+    return link;
+  }
+
+  private MockResponse json(int code, JsonElement body) {
+    return new MockResponse()
+        .setResponseCode(code)
+        .setHeader("Content-Type", JSON)
+        .setBody(gson.toJson(body));
+  }
+
+  private MockResponse error(int code, String message) {
+    JsonObject error = new JsonObject();
+    error.addProperty("ErrorCode", code);
+    error.addProperty("ErrorMessage", message);
+    return json(code, error);
+  }
+
+  private MockResponse notFound() {
+    return error(404, "Not found");
+  }
+
+  private MockResponse notAllowed() {
+    return error(405, "Method not allowed");
+  }
+
+  private double nextDouble() {
+    synchronized (random) {
+      return random.nextDouble();
+    }
+  }
+
+  private static int intParameter(HttpUrl url, String name, int defaultValue) {
+    String value = url.queryParameter(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Math.max(0, Integer.parseInt(value));
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  private static Map<String, String> parseForm(String body) {
+    Map<String, String> form = new HashMap<>();
+    for (String pair : body.split("&")) {
+      int separator = pair.indexOf('=');
+      if (separator < 0) {
+        continue;
+      }
+      try {
+        form.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+            URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+      } catch (UnsupportedEncodingException e) {
+        throw new AssertionError(e);
+      }
+    }
+    return form;
+  }
+
+  private static boolean isEmpty(String value) {
+    return value == null || value.isEmpty();
+  }
+}
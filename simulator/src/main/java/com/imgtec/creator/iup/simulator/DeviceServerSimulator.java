@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.creator.iup.simulator;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ServerSocketFactory;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Local stand-in for Device Server, backed by {@link MockWebServer} and {@link DeviceServerDispatcher}.
+ */
+public class DeviceServerSimulator {
+
+  /** MockWebServer logs every request, held here as loggers are only weakly referenced. */
+  private static final Logger MOCK_WEB_SERVER_LOGGER = Logger.getLogger(MockWebServer.class.getName());
+
+  static {
+    MOCK_WEB_SERVER_LOGGER.setLevel(Level.WARNING);
+  }
+
+  private final SimulatorOptions options;
+  private final MockWebServer server = new MockWebServer();
+
+  public DeviceServerSimulator(SimulatorOptions options) {
+    this.options = options;
+    server.setDispatcher(new DeviceServerDispatcher(options));
+    server.setServerSocketFactory(new NoDelayServerSocketFactory());
+  }
+
+  public void start() throws IOException {
+    server.start(InetAddress.getByName(options.getHost()), options.getPort());
+    // MockWebServer records every request, drain them so long load runs keep memory flat
+    Thread drainer = new Thread("simulator-drainer") {
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            server.takeRequest();
+          }
+        } catch (InterruptedException ignored) {
+        }
+      }
+    };
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+
+  public void shutdown() throws IOException {
+    server.shutdown();
+  }
+
+  /**
+   * @return root URL of the simulator, to be used as Device Server URL
+   */
+  public String getUrl() {
+    String url = server.url("/").toString();
+    return url.substring(0, url.length() - 1);
+  }
+
+  public int getPort() {
+    return server.getPort();
+  }
+
+  /**
+   * @return number of requests served since start
+   */
+  public int getRequestCount() {
+    return server.getRequestCount();
+  }
+
+  /**
+   * Starts simulator and serves requests until process is killed.
+   */
+  public static void main(String[] args) throws Exception {
+    SimulatorOptions options = SimulatorOptions.parse(args);
+    final DeviceServerSimulator simulator = new DeviceServerSimulator(options);
+    simulator.start();
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      @Override
+      public void run() {
+        try {
+          simulator.shutdown();
+        } catch (IOException ignored) {
+        }
+      }
+    });
+    System.out.println("Device Server simulator listening on " + simulator.getUrl() + " (" + options + ")");
+    System.out.println("Emulator builds: ./gradlew installDebug -PdeviceServerUrl=http://10.0.2.2:"
+        + simulator.getPort());
+    Thread.sleep(Long.MAX_VALUE);
+  }
+
+  /**
+   * MockWebServer writes headers and body separately, with Nagle's algorithm every response body waits
+   * for delayed ACK of headers (40 ms on Linux), which would dominate measured latency.
+   */
+  private static class NoDelayServerSocketFactory extends ServerSocketFactory {
+
+    @Override
+    public ServerSocket createServerSocket() throws IOException {
+      return new NoDelayServerSocket();
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class NoDelayServerSocket extends ServerSocket {
+
+    NoDelayServerSocket() throws IOException {
+    }
+
+    @Override
+    public Socket accept() throws IOException {
+      Socket socket = super.accept();
+      socket.setTcpNoDelay(true);
+      return socket;
+    }
+  }
+}
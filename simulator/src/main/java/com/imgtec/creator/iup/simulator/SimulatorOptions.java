@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2016, Imagination Technologies Limited and/or its affiliated group companies
+ * and/or licensors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *     and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *     conditions and the following disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *     endorse or promote products derived from this software without specific prior written
+ *     permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.creator.iup.simulator;
+
+/**
+ * Settings of {@link DeviceServerSimulator}. Every option can be given on command line as
+ * "--name=value", e.g. "--clients=5000 --latency=80 --jitter=40 --error-rate=0.01".
+ */
+public class SimulatorOptions {
+
+  private String host = "localhost";
+  private int port = 8080;
+  private int clients = 1000;
+  private long latencyMillis = 50;
+  private long jitterMillis = 20;
+  private double errorRate;
+  private double disconnectRate;
+  private int tokenTtlSeconds = 3600;
+  private long seed = 1;
+
+  public static SimulatorOptions parse(String[] args) {
+    SimulatorOptions options = new SimulatorOptions();
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (!arg.startsWith("--") || separator < 0) {
+        throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+      }
+      String name = arg.substring(2, separator);
+      String value = arg.substring(separator + 1);
+      switch (name) {
+        case "host":
+          options.setHost(value);
+          break;
+        case "port":
+          options.setPort(Integer.parseInt(value));
+          break;
+        case "clients":
+          options.setClients(Integer.parseInt(value));
+          break;
+        case "latency":
+          options.setLatencyMillis(Long.parseLong(value));
+          break;
+        case "jitter":
+          options.setJitterMillis(Long.parseLong(value));
+          break;
+        case "error-rate":
+          options.setErrorRate(Double.parseDouble(value));
+          break;
+        case "disconnect-rate":
+          options.setDisconnectRate(Double.parseDouble(value));
+          break;
+        case "token-ttl":
+          options.setTokenTtlSeconds(Integer.parseInt(value));
+          break;
+        case "seed":
+          options.setSeed(Long.parseLong(value));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option: " + name);
+      }
+    }
+    return options;
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  /**
+   * @param host address to bind to, use "0.0.0.0" to accept connections from physical devices
+   */
+  public SimulatorOptions setHost(String host) {
+    this.host = host;
+    return this;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  /**
+   * @param port port to listen on, 0 picks a free one
+   */
+  public SimulatorOptions setPort(int port) {
+    this.port = port;
+    return this;
+  }
+
+  public int getClients() {
+    return clients;
+  }
+
+  /**
+   * @param clients number of connected clients, each exposing objects 3, 3200, 3202, 3303 and 3311
+   */
+  public SimulatorOptions setClients(int clients) {
+    this.clients = clients;
+    return this;
+  }
+
+  public long getLatencyMillis() {
+    return latencyMillis;
+  }
+
+  /**
+   * @param latencyMillis minimum time spent on every request before response is sent
+   */
+  public SimulatorOptions setLatencyMillis(long latencyMillis) {
+    this.latencyMillis = latencyMillis;
+    return this;
+  }
+
+  public long getJitterMillis() {
+    return jitterMillis;
+  }
+
+  /**
+   * @param jitterMillis upper bound of random delay added to latency
+   */
+  public SimulatorOptions setJitterMillis(long jitterMillis) {
+    this.jitterMillis = jitterMillis;
+    return this;
+  }
+
+  public double getErrorRate() {
+    return errorRate;
+  }
+
+  /**
+   * @param errorRate fraction of requests answered with 500, in range [0, 1]
+   */
+  public SimulatorOptions setErrorRate(double errorRate) {
+    this.errorRate = errorRate;
+    return this;
+  }
+
+  public double getDisconnectRate() {
+    return disconnectRate;
+  }
+
+  /**
+   * @param disconnectRate fraction of requests on which connection is dropped without response, in range [0, 1]
+   */
+  public SimulatorOptions setDisconnectRate(double disconnectRate) {
+    this.disconnectRate = disconnectRate;
+    return this;
+  }
+
+  public int getTokenTtlSeconds() {
+    return tokenTtlSeconds;
+  }
+
+  /**
+   * @param tokenTtlSeconds lifetime of issued access tokens, requests with expired token get 401
+   */
+  public SimulatorOptions setTokenTtlSeconds(int tokenTtlSeconds) {
+    this.tokenTtlSeconds = tokenTtlSeconds;
+    return this;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * @param seed seed of random generator driving latency, errors and sensor values
+   */
+  public SimulatorOptions setSeed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "clients=" + clients
+        + ", latency=" + latencyMillis + "ms"
+        + ", jitter=" + jitterMillis + "ms"
+        + ", errorRate=" + errorRate
+        + ", disconnectRate=" + disconnectRate
+        + ", tokenTtl=" + tokenTtlSeconds + "s"
+        + ", seed=" + seed;
+  }
+}